@@ -0,0 +1,52 @@
+package org.example;
+
+/**
+ * Headless throughput test of {@link World#fill}, {@link World#replace} and
+ * {@link World#copy}/{@link World#paste}.
+ *
+ * Usage: BulkEditBenchmark [radius]. Generates the chunks within radius (default 2) of spawn,
+ * then fills a box covering all of them, alternating stone and dirt, and prints blocks per
+ * second for each round followed by one replace and one copy/paste of the same box.
+ */
+public class BulkEditBenchmark {
+  private static final int ROUNDS = 5;
+  private static final int TOP = 199;
+
+  public static void main(String[] args) {
+    int radius = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+
+    World world = new World(1);
+    try {
+      world.loadArea(0, 0, radius);
+      int min = -radius * World.CHUNK_SIZE;
+      int max = (radius + 1) * World.CHUNK_SIZE - 1;
+      AABB box = new AABB(min, 0, min, max, TOP, max);
+
+      for (int round = 0; round < ROUNDS; round++) {
+        int type = round % 2 == 0 ? BlockRegistry.STONE : BlockRegistry.DIRT;
+        long start = System.nanoTime();
+        long blocks = world.fill(box, type);
+        report("fill", blocks, System.nanoTime() - start);
+      }
+
+      long start = System.nanoTime();
+      long blocks = world.replace(box, BlockRegistry.STONE, BlockRegistry.GRASS);
+      report("replace", blocks, System.nanoTime() - start);
+
+      start = System.nanoTime();
+      Clipboard clipboard = world.copy(box);
+      report("copy", box.getVolume(), System.nanoTime() - start);
+
+      start = System.nanoTime();
+      blocks = world.paste(clipboard, min, 0, min);
+      report("paste", blocks, System.nanoTime() - start);
+    } finally {
+      world.cleanup();
+    }
+  }
+
+  private static void report(String operation, long blocks, long nanos) {
+    System.out.printf("%s: %d blocks in %.1f ms, %.1f M blocks/s%n",
+        operation, blocks, nanos / 1e6, blocks / (nanos / 1e9) / 1e6);
+  }
+}
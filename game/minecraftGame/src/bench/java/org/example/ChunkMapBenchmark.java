@@ -0,0 +1,96 @@
+package org.example;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Headless comparison of {@link ChunkMap} with the {@code ConcurrentHashMap<ChunkPos, Chunk>}
+ * it replaced.
+ *
+ * Usage: ChunkMapBenchmark [radius]. Loads a square of empty chunks (default radius 16) into
+ * both maps and times random lookups, a third of which miss, and 3x3 neighbourhood lookups
+ * through the map against following {@link Chunk#getNeighbour} links. ChunkMapTest checks
+ * that the two agree.
+ */
+public class ChunkMapBenchmark {
+  private static final int ROUNDS = 10;
+  private static final int LOOKUPS = 1 << 20;
+
+  public static void main(String[] args) {
+    int radius = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+
+    int side = 2 * radius + 1;
+    Chunk[] chunks = new Chunk[side * side];
+    ConcurrentHashMap<ChunkPos, Chunk> hashMap = new ConcurrentHashMap<>();
+    ChunkMap chunkMap = new ChunkMap();
+    int count = 0;
+    for (int x = -radius; x <= radius; x++) {
+      for (int z = -radius; z <= radius; z++) {
+        Chunk chunk = new Chunk(x, z, new short[0]);
+        chunks[count++] = chunk;
+        hashMap.put(new ChunkPos(x, z), chunk);
+        chunkMap.putIfAbsent(chunk);
+      }
+    }
+
+    // Queries reach a quarter of the width past the loaded square so some of them miss
+    Random random = new Random(1);
+    int reach = radius + radius / 2 + 1;
+    int[] queryX = new int[LOOKUPS];
+    int[] queryZ = new int[LOOKUPS];
+    for (int i = 0; i < LOOKUPS; i++) {
+      queryX[i] = random.nextInt(2 * reach + 1) - reach;
+      queryZ[i] = random.nextInt(2 * reach + 1) - reach;
+    }
+    int repeats = LOOKUPS / (9 * chunks.length) + 1;
+    long neighbourhoodLookups = (long) repeats * chunks.length * 9;
+
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      int hashHits = 0;
+      for (int i = 0; i < LOOKUPS; i++) {
+        if (hashMap.get(new ChunkPos(queryX[i], queryZ[i])) != null) hashHits++;
+      }
+      long hashRandom = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      int mapHits = 0;
+      for (int i = 0; i < LOOKUPS; i++) {
+        if (chunkMap.get(queryX[i], queryZ[i]) != null) mapHits++;
+      }
+      long mapRandom = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      int hashFound = 0;
+      for (int repeat = 0; repeat < repeats; repeat++) {
+        for (Chunk chunk : chunks) {
+          for (int dz = -1; dz <= 1; dz++) {
+            for (int dx = -1; dx <= 1; dx++) {
+              if (hashMap.get(new ChunkPos(chunk.getChunkX() + dx, chunk.getChunkZ() + dz)) != null) hashFound++;
+            }
+          }
+        }
+      }
+      long hashNeighbourhood = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      int linkFound = 0;
+      for (int repeat = 0; repeat < repeats; repeat++) {
+        for (Chunk chunk : chunks) {
+          for (int dz = -1; dz <= 1; dz++) {
+            for (int dx = -1; dx <= 1; dx++) {
+              if (chunk.getNeighbour(dx, dz) != null) linkFound++;
+            }
+          }
+        }
+      }
+      long linkNeighbourhood = System.nanoTime() - start;
+
+      // The hit counts are printed so the lookups cannot be optimised away
+      System.out.printf("round %d: random lookup ConcurrentHashMap %.1f ns, ChunkMap %.1f ns | 3x3 lookup ConcurrentHashMap %.1f ns, links %.1f ns (hits %d %d %d %d)%n",
+          round + 1, hashRandom / (double) LOOKUPS, mapRandom / (double) LOOKUPS,
+          hashNeighbourhood / (double) neighbourhoodLookups, linkNeighbourhood / (double) neighbourhoodLookups,
+          hashHits, mapHits, hashFound, linkFound);
+    }
+  }
+}
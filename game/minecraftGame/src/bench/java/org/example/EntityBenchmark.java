@@ -0,0 +1,50 @@
+package org.example;
+
+import java.util.Random;
+
+/**
+ * Headless tick-time test of {@link EntityStore}.
+ *
+ * Usage: EntityBenchmark [entities] [ticks]. Scatters the mobs (default 10000) over the
+ * spawn chunks like -Dgame.entities does, then ticks only the entities and prints the mean and
+ * worst tick time every 50 ticks.
+ */
+public class EntityBenchmark {
+  private static final float TICK_SECONDS = 1.0f / 20;
+  private static final int REPORT_EVERY = 50;
+
+  public static void main(String[] args) {
+    int amount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+    int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+
+    World world = new World(1);
+    try {
+      world.loadArea(0, 0, 3);
+      world.setSimulationDistance(World.UNLIMITED);
+      EntityStore entities = world.getEntities();
+      Random random = new Random(12345);
+      for (int i = 0; i < amount; i++) {
+        float x = random.nextFloat() * 48 - 24;
+        float z = random.nextFloat() * 48 - 24;
+        entities.spawnMob(x, world.getSurfaceHeight((int) Math.floor(x), (int) Math.floor(z)) + 0.5f, z);
+      }
+
+      long total = 0, worst = 0;
+      for (int tick = 1; tick <= ticks; tick++) {
+        long start = System.nanoTime();
+        entities.tick(world, TICK_SECONDS);
+        long nanos = System.nanoTime() - start;
+        total += nanos;
+        worst = Math.max(worst, nanos);
+        if (tick % REPORT_EVERY == 0) {
+          System.out.printf("ticks %d-%d: %d entities, mean %.2f ms, max %.2f ms per tick%n",
+              tick - REPORT_EVERY + 1, tick, entities.size(), total / 1e6 / REPORT_EVERY, worst / 1e6);
+          total = 0;
+          worst = 0;
+        }
+      }
+    } finally {
+      world.cleanup();
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package org.example;
+
+import java.util.Random;
+
+/**
+ * Headless throughput test of {@link World#raycast} and {@link World#lineOfSight}.
+ *
+ * Usage: RaycastBenchmark [rays] [radius]. Generates the chunks within radius (default 6)
+ * of spawn, then casts rays in random directions from above the spawn surface, one at a time
+ * and as a batch of line-of-sight pairs, and prints rays per second for each. Every run is
+ * repeated a few times so the later rounds show JIT-compiled speed.
+ */
+public class RaycastBenchmark {
+  private static final int ROUNDS = 5;
+  private static final float RAY_LENGTH = 64;
+
+  public static void main(String[] args) {
+    int rays = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int radius = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+
+    World world = new World(1);
+    try {
+      world.loadArea(0, 0, radius);
+      float eyeY = world.getSurfaceHeight(0, 0) + 1.6f;
+
+      Random random = new Random(42);
+      float[] directions = new float[rays * 3];
+      for (int i = 0; i < directions.length; i++) {
+        directions[i] = random.nextFloat() * 2 - 1;
+      }
+      float[] segments = new float[rays * 6];
+      for (int i = 0; i < rays; i++) {
+        segments[i * 6] = random.nextFloat() * 32 - 16;
+        segments[i * 6 + 1] = eyeY;
+        segments[i * 6 + 2] = random.nextFloat() * 32 - 16;
+        segments[i * 6 + 3] = random.nextFloat() * 64 - 32;
+        segments[i * 6 + 4] = eyeY + random.nextFloat() * 8 - 4;
+        segments[i * 6 + 5] = random.nextFloat() * 64 - 32;
+      }
+      boolean[] visible = new boolean[rays];
+      RaycastHit hit = new RaycastHit();
+
+      for (int round = 0; round < ROUNDS; round++) {
+        long start = System.nanoTime();
+        int hits = 0;
+        for (int i = 0; i < rays; i++) {
+          if (world.raycast(0.5f, eyeY, 0.5f, directions[i * 3], directions[i * 3 + 1], directions[i * 3 + 2],
+              RAY_LENGTH, hit)) {
+            hits++;
+          }
+        }
+        double single = (System.nanoTime() - start) / 1e9;
+
+        start = System.nanoTime();
+        int clear = world.lineOfSight(segments, rays, visible, hit);
+        double batched = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("round %d: raycast %.2f M rays/s (%d hits), lineOfSight %.2f M rays/s (%d clear)%n",
+            round + 1, rays / single / 1e6, hits, rays / batched / 1e6, clear);
+      }
+
+      // Horizontal rays with no distance limit, which end at the edge of the loaded chunks
+      long start = System.nanoTime();
+      world.raycast(0.5f, World.WORLD_HEIGHT - 0.5f, 0.5f, 1, 0, 0, Float.POSITIVE_INFINITY, hit);
+      world.raycast(0.5f, eyeY + 40, 0.5f, 1, 0, 0.3f, Float.POSITIVE_INFINITY, hit);
+      System.out.printf("unbounded rays finished in %.3f ms%n", (System.nanoTime() - start) / 1e6);
+    } finally {
+      world.cleanup();
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package org.example;
+
+/**
+ * Headless timing of chunk generation for each -Dgame.terrain kind.
+ *
+ * Usage: TerrainBenchmark [radius] [rounds]. Generates the square of chunks within radius
+ * (default 6) of the origin once per kind and round, interleaving the kinds so JIT warm-up
+ * and machine noise affect them alike, and prints the mean time per chunk. The density kinds
+ * get a new {@link DensityField} every round, so the lattice cache starts cold each time like
+ * in a new world. The first round includes warm-up and is best ignored.
+ */
+public class TerrainBenchmark {
+  private static final String[] KINDS = {"heightmap", "density", "density-voxel"};
+
+  public static void main(String[] args) {
+    int radius = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    int chunks = (2 * radius + 1) * (2 * radius + 1);
+    PerlinNoise noise = new PerlinNoise(World.SEED);
+
+    long blocks = 0;
+    for (int round = 1; round <= rounds; round++) {
+      StringBuilder line = new StringBuilder("round " + round + ":");
+      for (String kind : KINDS) {
+        DensityField density = kind.equals("heightmap") ? null : new DensityField(noise, kind.equals("density-voxel"));
+        long start = System.nanoTime();
+        for (int x = -radius; x <= radius; x++) {
+          for (int z = -radius; z <= radius; z++) {
+            // Keep the result alive so the work cannot be skipped
+            blocks += new Chunk(x, z, noise, density).getHeight();
+          }
+        }
+        line.append(String.format(" %s %.2f ms/chunk", kind, (System.nanoTime() - start) / 1e6 / chunks));
+      }
+      System.out.println(line);
+    }
+    System.out.println("(" + chunks + " chunks per kind per round, checksum " + blocks + ")");
+  }
+}
@@ -0,0 +1,51 @@
+package org.example;
+
+/** Box of whole blocks in world coordinates, both corners inclusive. */
+public final class AABB {
+  public final int minX, minY, minZ;
+  public final int maxX, maxY, maxZ;
+
+  public AABB(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+    if (minX > maxX || minY > maxY || minZ > maxZ) {
+      throw new IllegalArgumentException("Empty box " + minX + "," + minY + "," + minZ
+          + " to " + maxX + "," + maxY + "," + maxZ);
+    }
+    this.minX = minX;
+    this.minY = minY;
+    this.minZ = minZ;
+    this.maxX = maxX;
+    this.maxY = maxY;
+    this.maxZ = maxZ;
+  }
+
+  /** Box spanning two opposite corners given in any order. */
+  public static AABB of(int x1, int y1, int z1, int x2, int y2, int z2) {
+    return new AABB(Math.min(x1, x2), Math.min(y1, y2), Math.min(z1, z2),
+        Math.max(x1, x2), Math.max(y1, y2), Math.max(z1, z2));
+  }
+
+  public int getSizeX() {
+    return maxX - minX + 1;
+  }
+
+  public int getSizeY() {
+    return maxY - minY + 1;
+  }
+
+  public int getSizeZ() {
+    return maxZ - minZ + 1;
+  }
+
+  public long getVolume() {
+    return (long) getSizeX() * getSizeY() * getSizeZ();
+  }
+
+  public boolean contains(int x, int y, int z) {
+    return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+  }
+
+  @Override
+  public String toString() {
+    return "AABB[" + minX + "," + minY + "," + minZ + " to " + maxX + "," + maxY + "," + maxZ + "]";
+  }
+}
@@ -1,9 +0,0 @@
-package org.example;
-
-public class Block {
-  public final int type;
-
-  public Block(int type) {
-    this.type = type;
-  }
-}
\ No newline at end of file
@@ -0,0 +1,185 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * All block types, with dense ids starting at 0 for air. Properties live in flat arrays
+ * indexed by id, so the mesher, physics and lighting read them with a single array load
+ * instead of going through a per-block object.
+ */
+public final class BlockRegistry {
+  // Ids must fit the block field of VertexFormat
+  public static final int MAX_BLOCKS = VertexFormat.MAX_BLOCK_ID + 1;
+
+  private static int count = 0;
+  private static String[] names = new String[16];
+  private static boolean[] solid = new boolean[16];
+  private static boolean[] opaque = new boolean[16];
+  private static float[] color = new float[16 * 3];
+  private static int[] textureLayer = new int[16];
+  private static int[] lightEmission = new int[16];
+  private static boolean[] falling = new boolean[16];
+  // Fluids: the id of the source block, or -1, and the level, 8 for a source and 7 to 1 as it flows out
+  private static int[] fluidSource = new int[16];
+  private static int[] fluidLevel = new int[16];
+  private static int[] fluidDrop = new int[16];
+  private static int[] tickDelay = new int[16];
+
+  public static final int AIR = register("air", false, false, 0.0f, 0.0f, 0.0f, 0);
+  public static final int GRASS = register("grass", true, true, 0.0f, 0.8f, 0.0f, 0);
+  public static final int DIRT = register("dirt", true, true, 0.6f, 0.4f, 0.2f, 0);
+  public static final int STONE = register("stone", true, true, 0.5f, 0.5f, 0.5f, 0);
+  public static final int SAND = registerFalling("sand", 0.86f, 0.8f, 0.55f);
+  public static final int GRAVEL = registerFalling("gravel", 0.55f, 0.52f, 0.5f);
+  public static final int WATER = registerFluid("water", 0.2f, 0.35f, 0.9f, 0, 5, 1);
+  public static final int LAVA = registerFluid("lava", 0.95f, 0.4f, 0.05f, 15, 30, 2);
+
+  /** Levels of a fluid, from its source (8) down to the last flowing block (1). */
+  public static final int FLUID_LEVELS = 8;
+
+  private BlockRegistry() {
+  }
+
+  /** Adds a block type and returns its id. Not thread-safe; register everything at startup. */
+  public static int register(String name, boolean isSolid, boolean isOpaque,
+                             float r, float g, float b, int emission) {
+    if (count == MAX_BLOCKS) {
+      throw new IllegalStateException("Too many block types, limit is " + MAX_BLOCKS);
+    }
+    if (count == names.length) {
+      int capacity = Math.min(count * 2, MAX_BLOCKS);
+      names = Arrays.copyOf(names, capacity);
+      solid = Arrays.copyOf(solid, capacity);
+      opaque = Arrays.copyOf(opaque, capacity);
+      color = Arrays.copyOf(color, capacity * 3);
+      textureLayer = Arrays.copyOf(textureLayer, capacity);
+      lightEmission = Arrays.copyOf(lightEmission, capacity);
+      falling = Arrays.copyOf(falling, capacity);
+      fluidSource = Arrays.copyOf(fluidSource, capacity);
+      fluidLevel = Arrays.copyOf(fluidLevel, capacity);
+      fluidDrop = Arrays.copyOf(fluidDrop, capacity);
+      tickDelay = Arrays.copyOf(tickDelay, capacity);
+    }
+
+    int id = count++;
+    names[id] = name;
+    solid[id] = isSolid;
+    opaque[id] = isOpaque;
+    color[id * 3] = r;
+    color[id * 3 + 1] = g;
+    color[id * 3 + 2] = b;
+    textureLayer[id] = id;
+    lightEmission[id] = emission;
+    fluidSource[id] = -1;
+    return id;
+  }
+
+  /** Adds a block that falls when there is nothing under it, like sand. */
+  public static int registerFalling(String name, float r, float g, float b) {
+    int id = register(name, true, true, r, g, b, 0);
+    falling[id] = true;
+    tickDelay[id] = 2;
+    return id;
+  }
+
+  /**
+   * Adds a fluid as {@link #FLUID_LEVELS} consecutive ids: the returned source block, then
+   * flowing blocks from level 7 down to 1. Each flowing step is {@code levelDrop} levels
+   * lower, so a drop of 2 makes the fluid run half as far. Flow advances every
+   * {@code delay} ticks.
+   */
+  public static int registerFluid(String name, float r, float g, float b, int emission, int delay, int levelDrop) {
+    int source = register(name, false, false, r, g, b, emission);
+    for (int level = FLUID_LEVELS - 1; level >= 1; level--) {
+      register(name + "_" + level, false, false, r, g, b, emission);
+    }
+    for (int level = FLUID_LEVELS; level >= 1; level--) {
+      int id = getFluidBlock(source, level);
+      fluidSource[id] = source;
+      fluidLevel[id] = level;
+      fluidDrop[id] = levelDrop;
+      tickDelay[id] = delay;
+    }
+    return source;
+  }
+
+  public static int size() {
+    return count;
+  }
+
+  public static String getName(int id) {
+    return names[id];
+  }
+
+  /** Returns the id registered under {@code name}, or -1. */
+  public static int getId(String name) {
+    for (int id = 0; id < count; id++) {
+      if (names[id].equals(name)) return id;
+    }
+    return -1;
+  }
+
+  /** Blocks that stop movement and rays. */
+  public static boolean isSolid(int id) {
+    return solid[id];
+  }
+
+  /** Blocks that hide the faces behind them and occlude light. */
+  public static boolean isOpaque(int id) {
+    return opaque[id];
+  }
+
+  public static float getRed(int id) {
+    return color[id * 3];
+  }
+
+  public static float getGreen(int id) {
+    return color[id * 3 + 1];
+  }
+
+  public static float getBlue(int id) {
+    return color[id * 3 + 2];
+  }
+
+  public static int getTextureLayer(int id) {
+    return textureLayer[id];
+  }
+
+  public static int getLightEmission(int id) {
+    return lightEmission[id];
+  }
+
+  /** Blocks that fall when unsupported. */
+  public static boolean isFalling(int id) {
+    return falling[id];
+  }
+
+  public static boolean isFluid(int id) {
+    return fluidSource[id] >= 0;
+  }
+
+  /** The source block of the fluid this block belongs to, or -1 if it is not a fluid. */
+  public static int getFluidSource(int id) {
+    return fluidSource[id];
+  }
+
+  /** 8 for a fluid source, 7 to 1 for flowing fluid, 0 for anything else. */
+  public static int getFluidLevel(int id) {
+    return fluidLevel[id];
+  }
+
+  /** How many levels the fluid loses per block it flows sideways. */
+  public static int getFluidDrop(int id) {
+    return fluidDrop[id];
+  }
+
+  /** The block of the given fluid at the given level, 1 to {@link #FLUID_LEVELS}. */
+  public static int getFluidBlock(int source, int level) {
+    return source + FLUID_LEVELS - level;
+  }
+
+  /** Ticks between a change next to the block and its scheduled update, or 0 if it never updates. */
+  public static int getTickDelay(int id) {
+    return tickDelay[id];
+  }
+}
@@ -0,0 +1,216 @@
+package org.example;
+
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.stb.STBImage.*;
+
+/**
+ * Block textures packed into one GL_TEXTURE_2D_ARRAY with a layer per block id, so a
+ * chunk draws with a single texture bind.
+ *
+ * Each block loads {@code /textures/<name>.png} from the classpath with STB; blocks
+ * without an image get a generated tile in their registry colour. Decoding runs in
+ * parallel and does not need a GL context, so it can overlap window creation. The packed
+ * pixels are cached in {@code cache/block-textures.bin} under a checksum of the sources,
+ * and later launches skip decoding while the sources are unchanged.
+ */
+public class BlockTextures {
+  public static final int TILE_SIZE = 16;
+
+  private static final Path CACHE_FILE = Path.of("cache", "block-textures.bin");
+  private static final int CACHE_MAGIC = 0x424C4B54; // "BLKT"
+  private static final int CACHE_VERSION = 1;
+  private static final int CACHE_HEADER_BYTES = Integer.BYTES + Long.BYTES + Integer.BYTES;
+  private static final int TILE_BYTES = TILE_SIZE * TILE_SIZE * 4;
+
+  private BlockTextures() {
+  }
+
+  /** Loads and packs every layer on the common pool. The buffer is direct and ready for {@link #upload}. */
+  public static CompletableFuture<ByteBuffer> loadAsync() {
+    return CompletableFuture.supplyAsync(BlockTextures::load);
+  }
+
+  private static ByteBuffer load() {
+    long start = System.nanoTime();
+    int layers = BlockRegistry.size();
+
+    // Reading the sources is cheap; they decide whether the cached pixels are still valid
+    byte[][] sources = new byte[layers][];
+    IntStream.range(0, layers).parallel().forEach(id -> sources[id] = readSource(BlockRegistry.getName(id)));
+    long key = cacheKey(sources);
+
+    ByteBuffer pixels = readCache(key, layers);
+    if (pixels != null) {
+      Metrics.increment("textures.cacheHit");
+    } else {
+      ByteBuffer packed = ByteBuffer.allocateDirect(layers * TILE_BYTES);
+      IntStream.range(0, layers).parallel().forEach(id -> {
+        ByteBuffer tile = packed.duplicate();
+        tile.position(id * TILE_BYTES).limit((id + 1) * TILE_BYTES);
+        if (sources[id] != null) {
+          decode(BlockRegistry.getName(id), sources[id], tile.slice());
+        } else {
+          generate(id, tile.slice());
+        }
+      });
+      writeCache(key, packed);
+      pixels = packed;
+    }
+
+    Metrics.recordTime("textures.load", System.nanoTime() - start);
+    return pixels;
+  }
+
+  /** Creates the texture array from packed pixels. Must run on the GL thread. */
+  public static int upload(ByteBuffer pixels) {
+    int layers = pixels.capacity() / TILE_BYTES;
+    int textureId = glGenTextures();
+    glBindTexture(GL_TEXTURE_2D_ARRAY, textureId);
+    glTexImage3D(GL_TEXTURE_2D_ARRAY, 0, GL_RGBA8, TILE_SIZE, TILE_SIZE, layers, 0,
+        GL_RGBA, GL_UNSIGNED_BYTE, pixels);
+
+    // Keep the pixel-art look up close, mipmaps take care of shimmering far away
+    glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MIN_FILTER, GL_NEAREST_MIPMAP_LINEAR);
+    glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+    glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_S, GL_REPEAT);
+    glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_T, GL_REPEAT);
+    glGenerateMipmap(GL_TEXTURE_2D_ARRAY);
+    glBindTexture(GL_TEXTURE_2D_ARRAY, 0);
+    return textureId;
+  }
+
+  private static byte[] readSource(String name) {
+    try (InputStream in = BlockTextures.class.getResourceAsStream("/textures/" + name + ".png")) {
+      return in == null ? null : in.readAllBytes();
+    } catch (IOException e) {
+      System.err.println("Error reading texture " + name + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  private static void decode(String name, byte[] source, ByteBuffer tile) {
+    ByteBuffer encoded = MemoryUtil.memAlloc(source.length);
+    try (MemoryStack stack = MemoryStack.stackPush()) {
+      encoded.put(source).flip();
+      IntBuffer width = stack.mallocInt(1);
+      IntBuffer height = stack.mallocInt(1);
+      IntBuffer channels = stack.mallocInt(1);
+      ByteBuffer image = stbi_load_from_memory(encoded, width, height, channels, 4);
+      if (image == null) {
+        throw new IllegalStateException("Failed to decode texture " + name + ": " + stbi_failure_reason());
+      }
+
+      // Nearest-neighbour resample into the tile, a no-op copy for images that are already tile sized
+      int w = width.get(0);
+      int h = height.get(0);
+      for (int y = 0; y < TILE_SIZE; y++) {
+        for (int x = 0; x < TILE_SIZE; x++) {
+          int src = ((y * h / TILE_SIZE) * w + x * w / TILE_SIZE) * 4;
+          int dst = (y * TILE_SIZE + x) * 4;
+          for (int c = 0; c < 4; c++) {
+            tile.put(dst + c, image.get(src + c));
+          }
+        }
+      }
+      stbi_image_free(image);
+    } finally {
+      MemoryUtil.memFree(encoded);
+    }
+  }
+
+  // Flat registry colour with a little per-pixel variation so faces are not a single flat tone
+  private static void generate(int id, ByteBuffer tile) {
+    if (id == BlockRegistry.AIR) return;
+    for (int i = 0; i < TILE_SIZE * TILE_SIZE; i++) {
+      int hash = (i + id * 977) * 0x9E3779B1;
+      float shade = 0.85f + 0.15f * ((hash >>> 24) / 255.0f);
+      tile.put(i * 4, channel(BlockRegistry.getRed(id) * shade));
+      tile.put(i * 4 + 1, channel(BlockRegistry.getGreen(id) * shade));
+      tile.put(i * 4 + 2, channel(BlockRegistry.getBlue(id) * shade));
+      tile.put(i * 4 + 3, (byte) 255);
+    }
+  }
+
+  private static byte channel(float value) {
+    return (byte) Math.round(Math.min(1.0f, value) * 255);
+  }
+
+  private static long cacheKey(byte[][] sources) {
+    CRC32 crc = new CRC32();
+    ByteBuffer scratch = ByteBuffer.allocate(Integer.BYTES * 3);
+    scratch.putInt(CACHE_VERSION).putInt(TILE_SIZE).flip();
+    crc.update(scratch);
+    for (int id = 0; id < sources.length; id++) {
+      crc.update(BlockRegistry.getName(id).getBytes(StandardCharsets.UTF_8));
+      if (sources[id] != null) {
+        crc.update(sources[id]);
+      } else {
+        // Generated tiles depend on the registry colour
+        scratch.clear();
+        scratch.putFloat(BlockRegistry.getRed(id)).putFloat(BlockRegistry.getGreen(id)).putFloat(BlockRegistry.getBlue(id)).flip();
+        crc.update(scratch);
+      }
+    }
+    return crc.getValue();
+  }
+
+  private static ByteBuffer readCache(long key, int layers) {
+    if (!Files.isRegularFile(CACHE_FILE)) return null;
+    try (FileChannel channel = FileChannel.open(CACHE_FILE, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(CACHE_HEADER_BYTES);
+      ByteBuffer pixels = ByteBuffer.allocateDirect(layers * TILE_BYTES);
+      if (!readFully(channel, header)) return null;
+      header.flip();
+      if (header.getInt() != CACHE_MAGIC || header.getLong() != key || header.getInt() != layers) {
+        return null;
+      }
+      return readFully(channel, pixels) ? pixels.flip() : null;
+    } catch (IOException e) {
+      System.err.println("Ignoring texture cache: " + e.getMessage());
+      return null;
+    }
+  }
+
+  private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) return false;
+    }
+    return true;
+  }
+
+  private static void writeCache(long key, ByteBuffer pixels) {
+    Path tmp = CACHE_FILE.resolveSibling(CACHE_FILE.getFileName() + ".tmp");
+    try {
+      Files.createDirectories(CACHE_FILE.getParent());
+      try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING)) {
+        ByteBuffer header = ByteBuffer.allocate(CACHE_HEADER_BYTES);
+        header.putInt(CACHE_MAGIC).putLong(key).putInt(pixels.capacity() / TILE_BYTES).flip();
+        channel.write(new ByteBuffer[] {header, pixels.duplicate().clear()});
+      }
+      // Rename into place so a crash never leaves a half written cache behind
+      Files.move(tmp, CACHE_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      System.err.println("Could not write texture cache: " + e.getMessage());
+    }
+  }
+}
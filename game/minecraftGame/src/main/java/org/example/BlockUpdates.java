@@ -0,0 +1,398 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Block updates that run on the world tick: flowing water and lava, falling sand and gravel,
+ * and random ticks that spread grass.
+ *
+ * A change to a block schedules an update of it and its six neighbours, each after the delay
+ * of its type (see {@link BlockRegistry#getTickDelay}); blocks that never update are skipped.
+ * Updates wait in the {@link TickQueue} of their chunk. Each tick every simulated chunk runs
+ * its due updates and a few random ticks per non-empty section.
+ *
+ * Chunks run in parallel in four passes, one per combination of chunk x and z parity. An
+ * update reads and writes at most one block away and schedules at most two blocks away, so
+ * two chunks of the same parity, 16 blocks apart, never touch the same block. Writes to a
+ * chunk's own blocks go into one {@link Chunk.Edit} per pass; writes across its border are
+ * single-block edits of the neighbour.
+ *
+ * At most -Dgame.blockUpdateBudget scheduled updates (default 65536) run per tick. The rest
+ * stay queued for later ticks, so a flood slows down instead of stalling the tick. The
+ * pass that starts each tick rotates so no parity is always last to get the budget.
+ *
+ * Blocks changed by updates go to the world's {@link World.BlockChangeListener} after the last
+ * pass, on the ticking thread. Passes run one after another and chunks within a pass write
+ * disjoint blocks, so delivering pass by pass keeps every block's changes in order.
+ */
+public class BlockUpdates {
+  private static final int RANDOM_TICKS_PER_SECTION = 3;
+  private static final int SECTIONS = ChunkSnapshot.SECTIONS;
+  // Horizontal neighbours, then all six face neighbours
+  private static final int[] SIDE_X = {-1, 1, 0, 0};
+  private static final int[] SIDE_Z = {0, 0, -1, 1};
+  private static final int[] FACE_X = {-1, 1, 0, 0, 0, 0};
+  private static final int[] FACE_Y = {0, 0, -1, 1, 0, 0};
+  private static final int[] FACE_Z = {0, 0, 0, 0, -1, 1};
+
+  private final World world;
+  private final int budget = Integer.getInteger("game.blockUpdateBudget", 65536);
+  private final List<List<Chunk>> passes = new ArrayList<>();
+  // Each finished chunk pass adds its changes as x, y, z, type quadruples
+  private final List<int[]> changes = Collections.synchronizedList(new ArrayList<>());
+  private long tick = 0;
+
+  public BlockUpdates(World world) {
+    this.world = world;
+    for (int i = 0; i < 4; i++) {
+      passes.add(new ArrayList<>());
+    }
+  }
+
+  /** Ticks run so far; scheduled updates are due at a tick number. */
+  public long getTick() {
+    return tick;
+  }
+
+  /** Schedules updates around a block changed outside the tick, e.g. placed by a player. */
+  public void blockChanged(int x, int y, int z) {
+    Chunk chunk = world.getChunk(x >> 4, z >> 4);
+    if (chunk != null) {
+      new Pass(chunk, false).changed(x, y, z);
+    }
+  }
+
+  /**
+   * Schedules updates after a bulk edit of the box: for every block in it, and for the blocks
+   * just outside each face, so e.g. sand left hanging over a cleared box falls and water
+   * filled into a box spreads out of it. Only sections holding a block with a tick delay are
+   * looked at block by block.
+   */
+  public void regionChanged(AABB box) {
+    int minY = Math.max(0, box.minY - 1);
+    int maxY = Math.min(World.WORLD_HEIGHT - 1, box.maxY + 1);
+    for (int chunkX = (box.minX - 1) >> 4; chunkX <= (box.maxX + 1) >> 4; chunkX++) {
+      for (int chunkZ = (box.minZ - 1) >> 4; chunkZ <= (box.maxZ + 1) >> 4; chunkZ++) {
+        Chunk chunk = world.getChunk(chunkX, chunkZ);
+        if (chunk == null) continue;
+        Pass pass = null;
+        ChunkSnapshot snapshot = chunk.snapshot();
+        int baseX = chunkX * World.CHUNK_SIZE;
+        int baseZ = chunkZ * World.CHUNK_SIZE;
+        int x0 = Math.max(box.minX - 1, baseX), x1 = Math.min(box.maxX + 1, baseX + World.CHUNK_SIZE - 1);
+        int z0 = Math.max(box.minZ - 1, baseZ), z1 = Math.min(box.maxZ + 1, baseZ + World.CHUNK_SIZE - 1);
+        for (int sy = minY >> 4; sy <= maxY >> 4; sy++) {
+          // Most terrain, and anything just filled with stone or air, never updates
+          short[] section = snapshot.getSection(sy);
+          if (section == null || !hasTickingBlocks(section)) continue;
+          if (pass == null) {
+            pass = new Pass(chunk, false);
+          }
+          for (int y = Math.max(minY, sy * 16); y <= Math.min(maxY, sy * 16 + 15); y++) {
+            int outsideY = y < box.minY || y > box.maxY ? 1 : 0;
+            for (int z = z0; z <= z1; z++) {
+              int outsideZ = outsideY + (z < box.minZ || z > box.maxZ ? 1 : 0);
+              if (outsideZ > 1) continue;
+              int row = ((y & 15) * 16 + (z & 15)) * 16;
+              for (int x = x0; x <= x1; x++) {
+                // The box and its face neighbours, not the blocks diagonal to its edges
+                if (outsideZ + (x < box.minX || x > box.maxX ? 1 : 0) > 1) continue;
+                if (BlockRegistry.getTickDelay(section[row + (x & 15)]) != 0) {
+                  pass.schedule(x, y, z);
+                }
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static boolean hasTickingBlocks(short[] section) {
+    for (short type : section) {
+      if (BlockRegistry.getTickDelay(type) != 0) return true;
+    }
+    return false;
+  }
+
+  /** Runs one tick of updates. Returns the number of scheduled updates run. */
+  public int tick() {
+    long start = System.nanoTime();
+    tick++;
+    for (List<Chunk> pass : passes) {
+      pass.clear();
+    }
+    for (Chunk chunk : world.getLoadedChunks()) {
+      if (world.isSimulated(chunk.getChunkX(), chunk.getChunkZ())) {
+        passes.get((chunk.getChunkX() & 1) | (chunk.getChunkZ() & 1) << 1).add(chunk);
+      }
+    }
+
+    AtomicInteger remaining = new AtomicInteger(budget);
+    AtomicInteger randomTicks = new AtomicInteger();
+    World.BlockChangeListener listener = world.getBlockChangeListener();
+    for (int i = 0; i < 4; i++) {
+      passes.get((int) ((tick + i) & 3)).parallelStream().forEach(chunk -> {
+        Pass pass = new Pass(chunk, listener != null);
+        try {
+          pass.runScheduled(remaining);
+          randomTicks.addAndGet(pass.runRandom());
+        } finally {
+          pass.finish();
+        }
+      });
+    }
+    if (listener != null) {
+      for (int[] batch : changes) {
+        for (int i = 0; i < batch.length; i += 4) {
+          listener.blockChanged(batch[i], batch[i + 1], batch[i + 2], batch[i + 3]);
+        }
+      }
+      changes.clear();
+    }
+
+    int pending = 0;
+    for (List<Chunk> pass : passes) {
+      for (Chunk chunk : pass) {
+        pending += chunk.scheduledTicks.size();
+      }
+    }
+    int run = budget - Math.max(0, remaining.get());
+    if (remaining.get() <= 0) {
+      Metrics.increment("blockUpdates.overBudget");
+    }
+    Metrics.recordTime("blockUpdates.tick", System.nanoTime() - start);
+    Metrics.add("blockUpdates.scheduled", run);
+    Metrics.add("blockUpdates.random", randomTicks.get());
+    Metrics.setGauge("blockUpdates.pending", pending);
+    return run;
+  }
+
+  // The updates of one chunk in one tick, and the block access they go through
+  private final class Pass {
+    private final Chunk chunk;
+    private final int baseX, baseZ;
+    private Chunk.Edit edit;
+    private boolean edgeChanged = false;
+    // x, y, z, type of each block written, kept only when someone listens for changes
+    private final boolean recordChanges;
+    private int[] written;
+    private int writtenCount = 0;
+
+    Pass(Chunk chunk, boolean recordChanges) {
+      this.chunk = chunk;
+      this.recordChanges = recordChanges;
+      this.baseX = chunk.getChunkX() * World.CHUNK_SIZE;
+      this.baseZ = chunk.getChunkZ() * World.CHUNK_SIZE;
+    }
+
+    void runScheduled(AtomicInteger remaining) {
+      while (chunk.scheduledTicks.size() > 0) {
+        if (remaining.decrementAndGet() < 0) return;
+        int index = chunk.scheduledTicks.pollDue(tick);
+        if (index < 0) {
+          remaining.incrementAndGet();
+          return;
+        }
+        update(baseX + (index & 15), index >> 8, baseZ + (index >> 4 & 15));
+      }
+    }
+
+    int runRandom() {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      int count = 0;
+      for (int sy = 0; sy < SECTIONS; sy++) {
+        short[] section = edit != null ? edit.getSection(sy) : chunk.snapshot().getSection(sy);
+        if (section == null) continue;
+        for (int i = 0; i < RANDOM_TICKS_PER_SECTION; i++) {
+          int index = random.nextInt(ChunkSnapshot.SECTION_BLOCKS);
+          randomTick(baseX + (index & 15), sy * 16 + (index >> 8), baseZ + (index >> 4 & 15));
+          count++;
+        }
+      }
+      return count;
+    }
+
+    void finish() {
+      if (writtenCount > 0) {
+        changes.add(Arrays.copyOf(written, writtenCount * 4));
+      }
+      if (edit == null) return;
+      edit.commit();
+      if (edgeChanged) {
+        world.markNeighboursDirty(chunk);
+      }
+    }
+
+    private void update(int x, int y, int z) {
+      int type = getBlock(x, y, z);
+      if (BlockRegistry.isFalling(type)) {
+        fall(x, y, z, type);
+      } else if (BlockRegistry.isFluid(type)) {
+        flow(x, y, z, type);
+      }
+    }
+
+    private void fall(int x, int y, int z, int type) {
+      int below = getBlock(x, y - 1, z);
+      if (below != BlockRegistry.AIR && !BlockRegistry.isFluid(below)) return;
+      setBlock(x, y, z, BlockRegistry.AIR);
+      setBlock(x, y - 1, z, type);
+    }
+
+    private void flow(int x, int y, int z, int type) {
+      int source = BlockRegistry.getFluidSource(type);
+      int level = BlockRegistry.getFluidLevel(type);
+      int drop = BlockRegistry.getFluidDrop(type);
+
+      if (source == BlockRegistry.LAVA && touchesFluid(x, y, z, BlockRegistry.WATER)) {
+        setBlock(x, y, z, BlockRegistry.STONE);
+        return;
+      }
+
+      // Flowing fluid takes its level from whatever feeds it and dries up without a feed
+      if (level < BlockRegistry.FLUID_LEVELS) {
+        int fed = 0;
+        int sources = 0;
+        if (BlockRegistry.getFluidSource(getBlock(x, y + 1, z)) == source) {
+          fed = BlockRegistry.FLUID_LEVELS - 1;
+        }
+        for (int side = 0; side < 4; side++) {
+          int neighbour = getBlock(x + SIDE_X[side], y, z + SIDE_Z[side]);
+          if (BlockRegistry.getFluidSource(neighbour) != source) continue;
+          fed = Math.max(fed, BlockRegistry.getFluidLevel(neighbour) - drop);
+          if (neighbour == source) sources++;
+        }
+        // Water between two sources becomes a source when it rests on something
+        if (source == BlockRegistry.WATER && sources >= 2) {
+          int below = getBlock(x, y - 1, z);
+          if (BlockRegistry.isSolid(below) || below == source) {
+            fed = BlockRegistry.FLUID_LEVELS;
+          }
+        }
+        if (fed <= 0) {
+          setBlock(x, y, z, BlockRegistry.AIR);
+          return;
+        }
+        if (fed != level) {
+          level = fed;
+          setBlock(x, y, z, BlockRegistry.getFluidBlock(source, level));
+        }
+      }
+
+      // Fall first; only spread sideways when resting on something other than the same fluid
+      int below = getBlock(x, y - 1, z);
+      if (canFlowInto(below, source, BlockRegistry.FLUID_LEVELS - 1)) {
+        setBlock(x, y - 1, z, BlockRegistry.getFluidBlock(source, BlockRegistry.FLUID_LEVELS - 1));
+        return;
+      }
+      if (BlockRegistry.getFluidSource(below) == source) return;
+      int spread = level - drop;
+      if (spread < 1) return;
+      for (int side = 0; side < 4; side++) {
+        int nx = x + SIDE_X[side], nz = z + SIDE_Z[side];
+        if (canFlowInto(getBlock(nx, y, nz), source, spread)) {
+          setBlock(nx, y, nz, BlockRegistry.getFluidBlock(source, spread));
+        }
+      }
+    }
+
+    private boolean canFlowInto(int target, int source, int level) {
+      if (target == BlockRegistry.AIR) return true;
+      return BlockRegistry.getFluidSource(target) == source && BlockRegistry.getFluidLevel(target) < level;
+    }
+
+    private boolean touchesFluid(int x, int y, int z, int source) {
+      for (int face = 0; face < 6; face++) {
+        if (BlockRegistry.getFluidSource(getBlock(x + FACE_X[face], y + FACE_Y[face], z + FACE_Z[face])) == source) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    // Grass dies under opaque blocks and spreads to uncovered dirt next to it
+    private void randomTick(int x, int y, int z) {
+      int type = getBlock(x, y, z);
+      if (type != BlockRegistry.GRASS && type != BlockRegistry.DIRT) return;
+      boolean covered = BlockRegistry.isOpaque(getBlock(x, y + 1, z));
+      if (type == BlockRegistry.GRASS && covered) {
+        setBlock(x, y, z, BlockRegistry.DIRT);
+      } else if (type == BlockRegistry.DIRT && !covered && grassNear(x, y, z)) {
+        setBlock(x, y, z, BlockRegistry.GRASS);
+      }
+    }
+
+    private boolean grassNear(int x, int y, int z) {
+      for (int side = 0; side < 4; side++) {
+        for (int dy = -1; dy <= 1; dy++) {
+          if (getBlock(x + SIDE_X[side], y + dy, z + SIDE_Z[side]) == BlockRegistry.GRASS) return true;
+        }
+      }
+      return false;
+    }
+
+    // Below the world and in unloaded chunks reads as stone, so nothing falls or flows there
+    private int getBlock(int x, int y, int z) {
+      if (y >= World.WORLD_HEIGHT) return BlockRegistry.AIR;
+      if (y < 0) return BlockRegistry.STONE;
+      if (x >> 4 == chunk.getChunkX() && z >> 4 == chunk.getChunkZ()) {
+        return edit != null ? edit.getBlockType(x & 15, y, z & 15) : chunk.getBlockType(x & 15, y, z & 15);
+      }
+      Chunk other = world.nearby(chunk, x >> 4, z >> 4);
+      return other == null ? BlockRegistry.STONE : other.getBlockType(x & 15, y, z & 15);
+    }
+
+    private void setBlock(int x, int y, int z, int type) {
+      if (y < 0 || y >= World.WORLD_HEIGHT) return;
+      if (x >> 4 == chunk.getChunkX() && z >> 4 == chunk.getChunkZ()) {
+        if (edit == null) {
+          edit = chunk.edit();
+        }
+        int localX = x & 15, localZ = z & 15;
+        if (!edit.setBlock(localX, y, localZ, type)) return;
+        if (localX == 0 || localX == 15 || localZ == 0 || localZ == 15) {
+          edgeChanged = true;
+        }
+      } else if (!world.setBlockWithoutUpdates(x, y, z, type)) {
+        return;
+      }
+      if (recordChanges) {
+        if (written == null) {
+          written = new int[64];
+        } else if (writtenCount * 4 + 4 > written.length) {
+          written = Arrays.copyOf(written, written.length * 2);
+        }
+        written[writtenCount * 4] = x;
+        written[writtenCount * 4 + 1] = y;
+        written[writtenCount * 4 + 2] = z;
+        written[writtenCount * 4 + 3] = type;
+        writtenCount++;
+      }
+      changed(x, y, z);
+    }
+
+    void changed(int x, int y, int z) {
+      schedule(x, y, z);
+      for (int face = 0; face < 6; face++) {
+        schedule(x + FACE_X[face], y + FACE_Y[face], z + FACE_Z[face]);
+      }
+    }
+
+    void schedule(int x, int y, int z) {
+      if (y < 0 || y >= World.WORLD_HEIGHT) return;
+      int delay = BlockRegistry.getTickDelay(getBlock(x, y, z));
+      if (delay == 0) return;
+      Chunk target = x >> 4 == chunk.getChunkX() && z >> 4 == chunk.getChunkZ()
+          ? chunk : world.nearby(chunk, x >> 4, z >> 4);
+      if (target != null) {
+        target.scheduledTicks.schedule((y * 16 + (z & 15)) * 16 + (x & 15), tick + delay);
+      }
+    }
+  }
+}
@@ -91,6 +91,10 @@ public class Camera {
     return position;
   }
 
+  public Vector3f getFront() {
+    return front;
+  }
+
   public Vector3f getVelocity() {
     return velocity;
   }
@@ -1,238 +1,358 @@
 package org.example;
 
 import org.joml.Vector3f;
-import org.joml.FrustumIntersection;
 import org.joml.Matrix4f;
-import java.util.HashMap;
-import java.util.Map;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.locks.ReentrantLock;
 import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL15.*;
 import static org.lwjgl.opengl.GL20.*;
 import static org.lwjgl.opengl.GL30.*;
-import static org.lwjgl.opengl.GL31.*;
+import static org.example.GLProfiler.glBindBuffer;
+import static org.example.GLProfiler.glBindVertexArray;
+import static org.example.GLProfiler.glBufferData;
+import static org.example.GLProfiler.glDrawElements;
+import static org.example.GLProfiler.glUniformMatrix4fv;
 
 public class Chunk {
   private static final int CHUNK_SIZE = World.CHUNK_SIZE;
-  private final Map<BlockPos, Block> blocks = new HashMap<>();
-  private boolean isInitialized = false;
+  private static final int SECTIONS = ChunkSnapshot.SECTIONS;
+  private static final int SECTION_BLOCKS = ChunkSnapshot.SECTION_BLOCKS;
+
+  private final int chunkX;
+  private final int chunkZ;
+  // Readers take the current snapshot without locking; writers build a new one under editLock
+  private volatile ChunkSnapshot snapshot = ChunkSnapshot.EMPTY;
+  private final ReentrantLock editLock = new ReentrantLock();
+  // Snapshot version once generated or loaded; anything newer is a player edit
+  private long initialVersion;
+  // Loaded side neighbours towards -x, +x, -z and +z, maintained by ChunkMap
+  volatile Chunk west, east, north, south;
+  // Scheduled block updates, see BlockUpdates
+  final TickQueue scheduledTicks = new TickQueue();
+
+  // Mesh state, only touched on the render thread apart from the dirty flag
+  private volatile boolean meshDirty = true;
+  private int vaoId = -1;
   private int vboId = -1;
-  private int instanceVBO = -1;
-  private static int vaoId = -1;
-  private static boolean vaoInitialized = false;
-  private static final int MAX_INSTANCES = 4096;
+  private int indexCount = 0;
+
+  // Index buffer shared by every chunk VAO: quad q uses vertices 4q..4q+3 as 0,1,2 2,3,0
+  private static int quadIndexBuffer = -1;
+  private static int quadIndexCapacity = 0;
 
   public Chunk(int chunkX, int chunkZ, PerlinNoise noise) {
-    // Add to Chunk constructor
-    generateTerrain(chunkX, chunkZ, noise);
-    System.out.println("Generating chunk at " + chunkX + "," + chunkZ + " with " + blocks.size() + " blocks");
+    this(chunkX, chunkZ, noise, null);
+  }
 
+  /** Generates the chunk, with caves and overhangs from the density field when it is not null. */
+  public Chunk(int chunkX, int chunkZ, PerlinNoise noise, DensityField density) {
+    this.chunkX = chunkX;
+    this.chunkZ = chunkZ;
+    long start = System.nanoTime();
+    if (density == null) {
+      generateTerrain(chunkX, chunkZ, noise);
+    } else {
+      generateDensityTerrain(chunkX, chunkZ, noise, density);
+    }
+    Metrics.recordTime("chunk.generate", System.nanoTime() - start);
+    initialVersion = snapshot.getVersion();
+  }
+
+  /** Wraps already generated blocks, indexed like {@link #copyBlockTypes}. Used when chunks come from the network or disk. */
+  Chunk(int chunkX, int chunkZ, short[] blockTypes) {
+    this.chunkX = chunkX;
+    this.chunkZ = chunkZ;
+    short[][] sections = new short[SECTIONS][];
+    int height = 0;
+    for (int s = 0; s < SECTIONS && s * SECTION_BLOCKS < blockTypes.length; s++) {
+      int base = s * SECTION_BLOCKS;
+      int length = Math.min(SECTION_BLOCKS, blockTypes.length - base);
+      for (int i = 0; i < length; i++) {
+        if (blockTypes[base + i] != BlockRegistry.AIR) {
+          height = Math.max(height, (base + i) / (CHUNK_SIZE * CHUNK_SIZE) + 1);
+        }
+      }
+      if (height > s * CHUNK_SIZE) {
+        sections[s] = new short[SECTION_BLOCKS];
+        System.arraycopy(blockTypes, base, sections[s], 0, length);
+      }
+    }
+    snapshot = new ChunkSnapshot(sections, height, 0);
+    initialVersion = 0;
   }
 
   private void generateTerrain(int chunkX, int chunkZ, PerlinNoise noise) {
-    int maxHeight = 32;  // Increased from 16
-    int minHeight = 4;   // Added minimum height
+    Edit edit = edit();
 
     for (int x = 0; x < CHUNK_SIZE; x++) {
       for (int z = 0; z < CHUNK_SIZE; z++) {
-        // Use absolute coordinates for noise
-        double nx = (chunkX * CHUNK_SIZE + x) / 32.0;  // Changed from 20.0
-        double nz = (chunkZ * CHUNK_SIZE + z) / 32.0;
-
-        // Apply multiple octaves with varying frequencies
-        double height = noise.octaveNoise(nx, 0, nz, 4, 0.5);
-
-        // Normalize to 0-1 range
-        height = (height + 1.0) * 0.5;
-
-        // Add variation
-        double detailNoise = noise.noise(nx * 4, 0, nz * 4) * 0.1;  // Increased from 0.05
-        height += detailNoise;
-
-        // Clamp height to valid range
-        height = Math.max(0, Math.min(1, height));
-
-        // Scale to desired height
-        int y = (int)(minHeight + height * maxHeight);
+        int y = (int) terrainHeight(noise, chunkX * CHUNK_SIZE + x, chunkZ * CHUNK_SIZE + z);
 
         // Create blocks
         for (int blockY = 0; blockY <= y; blockY++) {
           int blockType;
           if (blockY == y) {
-            blockType = World.GRASS;
+            blockType = BlockRegistry.GRASS;
           } else if (blockY > y - 3) {
-            blockType = World.DIRT;
+            blockType = BlockRegistry.DIRT;
           } else {
-            blockType = World.STONE;
+            blockType = BlockRegistry.STONE;
           }
 
-          blocks.put(new BlockPos(x, blockY, z), new Block(blockType));
+          edit.setBlock(x, blockY, z, blockType);
+        }
+      }
+    }
+    edit.commit();
+  }
+
+  /** Height of the heightmap terrain's top block at a world column, before rounding down. */
+  static double terrainHeight(PerlinNoise noise, int worldX, int worldZ) {
+    int maxHeight = 32;  // Increased from 16
+    int minHeight = 4;   // Added minimum height
+
+    // Use absolute coordinates for noise
+    double nx = worldX / 32.0;  // Changed from 20.0
+    double nz = worldZ / 32.0;
+
+    // Apply multiple octaves with varying frequencies
+    double height = noise.octaveNoise(nx, 0, nz, 4, 0.5);
+
+    // Normalize to 0-1 range
+    height = (height + 1.0) * 0.5;
+
+    // Add variation
+    double detailNoise = noise.noise(nx * 4, 0, nz * 4) * 0.1;  // Increased from 0.05
+    height += detailNoise;
+
+    // Clamp height to valid range
+    height = Math.max(0, Math.min(1, height));
+
+    // Scale to desired height
+    return minHeight + height * maxHeight;
+  }
+
+  // Solid wherever the density is positive; the top few blocks near the surface become grass and dirt
+  private void generateDensityTerrain(int chunkX, int chunkZ, PerlinNoise noise, DensityField density) {
+    float[] values = new float[CHUNK_SIZE * CHUNK_SIZE * DensityField.TOP];
+    density.sample(chunkX, chunkZ, values);
+
+    Edit edit = edit();
+    int top = 0;
+    for (int x = 0; x < CHUNK_SIZE; x++) {
+      for (int z = 0; z < CHUNK_SIZE; z++) {
+        int surface = (int) terrainHeight(noise, chunkX * CHUNK_SIZE + x, chunkZ * CHUNK_SIZE + z);
+        int depth = -1; // solid blocks since the last air block above, -1 while in air
+        for (int y = DensityField.TOP - 1; y >= 0; y--) {
+          int i = (y * CHUNK_SIZE + z) * CHUNK_SIZE + x;
+          if (values[i] <= 0 && y > 0) {
+            depth = -1;
+            continue;
+          }
+          depth++;
+          int blockType;
+          // Cave floors deep underground stay stone
+          if (y < surface - 8 || depth >= 3) {
+            blockType = BlockRegistry.STONE;
+          } else if (depth == 0) {
+            blockType = BlockRegistry.GRASS;
+          } else {
+            blockType = BlockRegistry.DIRT;
+          }
+          edit.writableSection(y >> 4)[i - (y >> 4) * SECTION_BLOCKS] = (short) blockType;
+          top = Math.max(top, y + 1);
         }
       }
     }
+    edit.raiseHeight(top);
+    edit.commit();
   }
 
   public boolean isBlockAt(int x, int y, int z) {
-    BlockPos pos = new BlockPos(x, y, z);
-    Block block = blocks.get(pos);
-    return block != null && block.type != World.AIR;
+    return snapshot.isBlockAt(x, y, z);
   }
 
-  public void render(int chunkX, int chunkZ, Vector3f playerPosition, Map<Integer, Integer> blockTypeCount) {
-    // Simple distance-based culling
-    float chunkCenterX = chunkX * CHUNK_SIZE + CHUNK_SIZE / 2.0f;
-    float chunkCenterZ = chunkZ * CHUNK_SIZE + CHUNK_SIZE / 2.0f;
-    float dx = playerPosition.x - chunkCenterX;
-    float dz = playerPosition.z - chunkCenterZ;
-    float distSquared = dx * dx + dz * dz;
+  public int getBlockType(int x, int y, int z) {
+    return snapshot.getBlockType(x, y, z);
+  }
 
-    // Skip if too far away (square of render distance × chunk size)
-    if (distSquared > (World.RENDER_DISTANCE * CHUNK_SIZE) * (World.RENDER_DISTANCE * CHUNK_SIZE)) {
-      return;
+  /**
+   * The chunk's blocks as of now. Take one snapshot and read everything from it when several
+   * reads have to agree with each other, e.g. when meshing or serializing.
+   */
+  public ChunkSnapshot snapshot() {
+    return snapshot;
+  }
+
+  /** Sets a block by chunk-local coordinates and schedules a remesh. Returns true if the block changed. */
+  public boolean setBlock(int x, int y, int z, int type) {
+    Edit edit = edit();
+    try {
+      return edit.setBlock(x, y, z, type);
+    } finally {
+      edit.commit();
     }
+  }
 
-    // Render visible blocks
-    for (Map.Entry<BlockPos, Block> entry : blocks.entrySet()) {
-      BlockPos pos = entry.getKey();
-      Block block = entry.getValue();
+  /** True once the chunk has been edited after it was generated or loaded. */
+  public boolean isModified() {
+    return snapshot.getVersion() != initialVersion;
+  }
 
-      if (block.type == World.AIR) continue;
+  /** Makes {@link #isModified()} true until the chunk is dropped, for chunks not from generation or disk. */
+  void markModified() {
+    initialVersion = -1;
+  }
 
-      // Skip block if all six faces are covered
-      if (!isVisibleFace(pos.x, pos.y, pos.z, chunkX, chunkZ)) continue;
+  /**
+   * Starts a batch of block changes. Other writers of this chunk wait until
+   * {@link Edit#commit()}, which every caller must reach, so use try/finally.
+   */
+  public Edit edit() {
+    editLock.lock();
+    return new Edit(snapshot);
+  }
 
-      // Count blocks by type for stats
-      blockTypeCount.merge(block.type, 1, Integer::sum);
+  // Index inside a section, y is relative to the section
+  private static int index(int x, int y, int z) {
+    return (y * CHUNK_SIZE + z) * CHUNK_SIZE + x;
+  }
 
-      // Render block with instanced rendering or direct calls depending on implementation
-      renderBlock(pos.x + chunkX * CHUNK_SIZE, pos.y, pos.z + chunkZ * CHUNK_SIZE, block.type);
-    }
+  /** One above the highest non-air block; every y at or above this is air. */
+  public int getHeight() {
+    return snapshot.getHeight();
   }
 
-  private boolean isVisibleFace(int x, int y, int z, int chunkX, int chunkZ) {
-    // Check if block has at least one exposed face
-    int worldX = x + chunkX * CHUNK_SIZE;
-    int worldZ = z + chunkZ * CHUNK_SIZE;
+  /** Writes every block type into {@code dst}, indexed (y * 16 + z) * 16 + x. */
+  public void copyBlockTypes(short[] dst) {
+    snapshot.copyBlockTypes(dst);
+  }
 
-    return !isBlockAt(x+1, y, z) || !isBlockAt(x-1, y, z) ||
-        !isBlockAt(x, y+1, z) || !isBlockAt(x, y-1, z) ||
-        !isBlockAt(x, y, z+1) || !isBlockAt(x, y, z-1);
+  public int getChunkX() {
+    return chunkX;
   }
 
-  private void renderBlock(int x, int y, int z, int blockType) {
-    // Get the current shader program
-    int program = glGetInteger(GL_CURRENT_PROGRAM);
-    int modelLoc = glGetUniformLocation(program, "model");
+  public int getChunkZ() {
+    return chunkZ;
+  }
+
+  /**
+   * The loaded chunk dx, dz chunks away (each -1 to 1) found through the neighbour links,
+   * without a map lookup. A diagonal is reached through either side chunk, so it is only
+   * found when one of those is loaded too.
+   */
+  public Chunk getNeighbour(int dx, int dz) {
+    if (dx == 0) return side(this, 0, dz);
+    if (dz == 0) return side(this, dx, 0);
+    Chunk diagonal = side(side(this, dx, 0), 0, dz);
+    return diagonal != null ? diagonal : side(side(this, 0, dz), dx, 0);
+  }
+
+  private static Chunk side(Chunk chunk, int dx, int dz) {
+    if (chunk == null) return null;
+    if (dx != 0) return dx < 0 ? chunk.west : chunk.east;
+    if (dz != 0) return dz < 0 ? chunk.north : chunk.south;
+    return chunk;
+  }
+
+  /** Schedules a remesh on the next render, e.g. because a neighbour was loaded. */
+  public void markDirty() {
+    meshDirty = true;
+  }
+
+  public void render(World world, ChunkMesher mesher, Vector3f playerPosition, int modelLoc) {
+    // Simple distance-based culling
+    float chunkCenterX = chunkX * CHUNK_SIZE + CHUNK_SIZE / 2.0f;
+    float chunkCenterZ = chunkZ * CHUNK_SIZE + CHUNK_SIZE / 2.0f;
+    float dx = playerPosition.x - chunkCenterX;
+    float dz = playerPosition.z - chunkCenterZ;
+    float distSquared = dx * dx + dz * dz;
 
-    // This uniform doesn't exist in your shader!
-    // int colorLoc = glGetUniformLocation(program, "blockColor");
+    // Skip if too far away (square of render distance × chunk size)
+    int renderDistance = world.getRenderDistance();
+    if (distSquared > (renderDistance * CHUNK_SIZE) * (renderDistance * CHUNK_SIZE)) {
+      return;
+    }
 
-    // Use the existing "ourColor" instead
-    Vector3f color = new Vector3f();
-    switch (blockType) {
-      case World.GRASS:
-        color.set(0.0f, 0.8f, 0.0f);
-        break;
-      case World.DIRT:
-        color.set(0.6f, 0.4f, 0.2f);
-        break;
-      case World.STONE:
-        color.set(0.5f, 0.5f, 0.5f);
-        break;
+    if (meshDirty) {
+      meshDirty = false;
+      mesher.build(world.getNeighbourhood(this));
+      uploadMesh(mesher.getVertices(), mesher.size());
     }
+    if (indexCount == 0) return;
 
-    // Create and upload model matrix
+    // One model matrix and one draw call for the whole chunk
     try (MemoryStack stack = MemoryStack.stackPush()) {
-      Matrix4f model = new Matrix4f().translate(x, y, z);
+      Matrix4f model = new Matrix4f().translate(chunkX * CHUNK_SIZE, 0, chunkZ * CHUNK_SIZE);
       FloatBuffer modelBuffer = stack.mallocFloat(16);
       model.get(modelBuffer);
       glUniformMatrix4fv(modelLoc, false, modelBuffer);
+    }
+
+    glBindVertexArray(vaoId);
+    glDrawElements(GL_TRIANGLES, indexCount, GL_UNSIGNED_INT, 0);
+    glBindVertexArray(0);
+  }
+
+  private void uploadMesh(int[] vertices, int size) {
+    int quads = size / (VertexFormat.VERTEX_INTS * 4);
+    indexCount = quads * 6;
+    if (quads == 0) return;
 
-      // Draw a unit cube centered at the origin
-      renderCube(color);
-    }
-  }
-
-  private void renderCube(Vector3f color) {
-    // Create static VAO for cube if not already initialized
-    if (!vaoInitialized) {
-      // Define vertices for a unit cube centered at the origin
-      float[] vertices = {
-          // Front face
-          -0.5f, -0.5f,  0.5f,
-          0.5f, -0.5f,  0.5f,
-          0.5f,  0.5f,  0.5f,
-          -0.5f,  0.5f,  0.5f,
-          // Back face
-          -0.5f, -0.5f, -0.5f,
-          -0.5f,  0.5f, -0.5f,
-          0.5f,  0.5f, -0.5f,
-          0.5f, -0.5f, -0.5f,
-          // Top face
-          -0.5f,  0.5f, -0.5f,
-          -0.5f,  0.5f,  0.5f,
-          0.5f,  0.5f,  0.5f,
-          0.5f,  0.5f, -0.5f,
-          // Bottom face
-          -0.5f, -0.5f, -0.5f,
-          0.5f, -0.5f, -0.5f,
-          0.5f, -0.5f,  0.5f,
-          -0.5f, -0.5f,  0.5f,
-          // Right face
-          0.5f, -0.5f, -0.5f,
-          0.5f,  0.5f, -0.5f,
-          0.5f,  0.5f,  0.5f,
-          0.5f, -0.5f,  0.5f,
-          // Left face
-          -0.5f, -0.5f, -0.5f,
-          -0.5f, -0.5f,  0.5f,
-          -0.5f,  0.5f,  0.5f,
-          -0.5f,  0.5f, -0.5f
-      };
-
-      // Define indices for cube
-      int[] indices = {
-          0, 1, 2, 2, 3, 0,       // Front face
-          4, 5, 6, 6, 7, 4,       // Back face
-          8, 9, 10, 10, 11, 8,    // Top face
-          12, 13, 14, 14, 15, 12, // Bottom face
-          16, 17, 18, 18, 19, 16, // Right face
-          20, 21, 22, 22, 23, 20  // Left face
-      };
-
-      // Create VAO and VBO
+    ensureQuadIndices(quads);
+    if (vaoId == -1) {
       vaoId = glGenVertexArrays();
+      vboId = glGenBuffers();
       glBindVertexArray(vaoId);
+      glBindBuffer(GL_ARRAY_BUFFER, vboId);
 
-      // Store vertex data
-      int vbo = glGenBuffers();
-      glBindBuffer(GL_ARRAY_BUFFER, vbo);
-      glBufferData(GL_ARRAY_BUFFER, vertices, GL_STATIC_DRAW);
-      glVertexAttribPointer(0, 3, GL_FLOAT, false, 0, 0);
+      // Both packed words go to the shader as one uvec2, see VertexFormat
+      glVertexAttribIPointer(0, 2, GL_UNSIGNED_INT, VertexFormat.VERTEX_BYTES, 0);
       glEnableVertexAttribArray(0);
 
-      // Store indices
-      int ebo = glGenBuffers();
-      glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ebo);
-      glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STATIC_DRAW);
-
-      // Unbind VAO
+      glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, quadIndexBuffer);
       glBindVertexArray(0);
-      vaoInitialized = true;
     }
 
-    // Bind VAO and render
-    glBindVertexArray(vaoId);
-
-    // Set color attribute
-    glVertexAttrib3f(1, color.x, color.y, color.z);
+    IntBuffer buffer = MemoryUtil.memAllocInt(size);
+    try {
+      buffer.put(vertices, 0, size).flip();
+      glBindBuffer(GL_ARRAY_BUFFER, vboId);
+      glBufferData(GL_ARRAY_BUFFER, buffer, GL_STATIC_DRAW);
+      glBindBuffer(GL_ARRAY_BUFFER, 0);
+    } finally {
+      MemoryUtil.memFree(buffer);
+    }
+  }
 
-    // Draw cube
-    glDrawElements(GL_TRIANGLES, 36, GL_UNSIGNED_INT, 0);
+  private static void ensureQuadIndices(int quads) {
+    if (quads <= quadIndexCapacity) return;
+
+    int capacity = Math.max(quads, quadIndexCapacity * 2);
+    int[] indices = new int[capacity * 6];
+    for (int q = 0; q < capacity; q++) {
+      int v = q * 4;
+      indices[q * 6] = v;
+      indices[q * 6 + 1] = v + 1;
+      indices[q * 6 + 2] = v + 2;
+      indices[q * 6 + 3] = v + 2;
+      indices[q * 6 + 4] = v + 3;
+      indices[q * 6 + 5] = v;
+    }
 
-    // Unbind VAO
+    // Resizing keeps the same buffer name, so VAOs that already reference it stay valid
+    if (quadIndexBuffer == -1) {
+      quadIndexBuffer = glGenBuffers();
+    }
     glBindVertexArray(0);
+    glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, quadIndexBuffer);
+    glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STATIC_DRAW);
+    glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+    quadIndexCapacity = capacity;
   }
 
   public void cleanup() {
@@ -240,9 +360,100 @@ public class Chunk {
       glDeleteBuffers(vboId);
       vboId = -1;
     }
-    if (instanceVBO != -1) {
-      glDeleteBuffers(instanceVBO);
-      instanceVBO = -1;
+    if (vaoId != -1) {
+      glDeleteVertexArrays(vaoId);
+      vaoId = -1;
+    }
+    indexCount = 0;
+    meshDirty = true;
+  }
+
+  /**
+   * Block changes against one snapshot. Sections are copied the first time they are written,
+   * so readers of the old snapshot never see a half applied edit, and untouched sections are
+   * shared with it. Publishing the result is a single volatile write.
+   */
+  public final class Edit {
+    private final ChunkSnapshot base;
+    private final short[][] sections = new short[SECTIONS][];
+    private int copiedSections = 0;
+    private int changedSections = 0;
+    private int height;
+    private boolean committed = false;
+
+    private Edit(ChunkSnapshot base) {
+      this.base = base;
+      this.height = base.getHeight();
+      for (int s = 0; s < SECTIONS; s++) {
+        sections[s] = base.getSection(s);
+      }
+    }
+
+    public int getBlockType(int x, int y, int z) {
+      short[] section = sections[y >> 4];
+      return section == null ? BlockRegistry.AIR : section[index(x, y & 15, z)];
+    }
+
+    /** Returns true if the block changed. */
+    public boolean setBlock(int x, int y, int z, int type) {
+      short[] section = sections[y >> 4];
+      int i = index(x, y & 15, z);
+      int previous = section == null ? BlockRegistry.AIR : section[i];
+      if (previous == type) return false;
+
+      writableSection(y >> 4)[i] = (short) type;
+      if (type != BlockRegistry.AIR) height = Math.max(height, y + 1);
+      return true;
+    }
+
+    /** The section's current blocks for reading, or null if it is all air. Do not write to it. */
+    short[] getSection(int sectionY) {
+      return sections[sectionY];
+    }
+
+    /**
+     * The section's blocks for direct writing, indexed like {@link ChunkSnapshot}. Callers that
+     * write through this must keep {@link #raiseHeight} up to date themselves.
+     */
+    short[] writableSection(int sectionY) {
+      if (committed) {
+        throw new IllegalStateException("Edit of chunk " + chunkX + "," + chunkZ + " was already committed");
+      }
+      if ((copiedSections & (1 << sectionY)) == 0) {
+        short[] original = sections[sectionY];
+        sections[sectionY] = original == null ? new short[SECTION_BLOCKS] : original.clone();
+        copiedSections |= 1 << sectionY;
+      }
+      changedSections |= 1 << sectionY;
+      return sections[sectionY];
+    }
+
+    /** True once {@link #writableSection} was called for the section in this edit. */
+    boolean isWritable(int sectionY) {
+      return (changedSections & (1 << sectionY)) != 0;
+    }
+
+    void raiseHeight(int newHeight) {
+      height = Math.max(height, newHeight);
+    }
+
+    /** Bit s is set when section s was written. */
+    public int getChangedSections() {
+      return changedSections;
+    }
+
+    /** Publishes the changes, if any, and releases the chunk to other writers. */
+    public void commit() {
+      if (committed) return;
+      committed = true;
+      try {
+        if (changedSections != 0) {
+          snapshot = new ChunkSnapshot(sections, height, base.getVersion() + 1);
+          meshDirty = true;
+        }
+      } finally {
+        editLock.unlock();
+      }
     }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,211 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact binary form of a chunk, used for the network and for storage.
+ *
+ * <pre>
+ * int    chunkX, chunkZ
+ * short  section mask, bit s set when the 16x16x16 section s holds any non-air block
+ * per present section, bottom to top:
+ *   short   palette size n, then n shorts of block id
+ *   byte    bits per entry b = ceil(log2(n)), 0 when the section is a single block type
+ *   long[]  4096 palette indices, 64 / b per long, never split across two longs
+ * </pre>
+ *
+ * A terrain section with stone, dirt and grass needs 2 bits per block, 1 KB instead of
+ * the 8 KB of raw shorts; fully solid or fully air sections cost a few bytes.
+ *
+ * On disk the same bytes are additionally deflated, see {@link #encodeCompressed}.
+ */
+public final class ChunkCodec {
+  private static final int SIZE = World.CHUNK_SIZE;
+  private static final int SECTION_BLOCKS = SIZE * SIZE * SIZE;
+  private static final int SECTIONS = World.WORLD_HEIGHT / SIZE;
+
+  private ChunkCodec() {
+  }
+
+  public static byte[] encode(Chunk chunk) {
+    // Height and blocks have to come from the same snapshot
+    ChunkSnapshot snapshot = chunk.snapshot();
+    short[] blocks = new short[snapshot.getHeight() * SIZE * SIZE];
+    snapshot.copyBlockTypes(blocks);
+    return encode(chunk.getChunkX(), chunk.getChunkZ(), blocks);
+  }
+
+  /** Encodes blocks indexed (y * 16 + z) * 16 + x; anything past the end of the array is air. */
+  public static byte[] encode(int chunkX, int chunkZ, short[] blocks) {
+    int sectionCount = Math.min(SECTIONS, (blocks.length + SECTION_BLOCKS - 1) / SECTION_BLOCKS);
+    short[] palette = new short[SECTION_BLOCKS];
+    int[] indices = new int[SECTION_BLOCKS];
+
+    // Worst case is a full 12 bit palette in every section
+    ByteBuffer out = ByteBuffer.allocate(10 + sectionCount * (3 + SECTION_BLOCKS * 2 + SECTION_BLOCKS * 2));
+    out.putInt(chunkX).putInt(chunkZ);
+    int maskPosition = out.position();
+    out.putShort((short) 0);
+
+    int mask = 0;
+    for (int s = 0; s < sectionCount; s++) {
+      int base = s * SECTION_BLOCKS;
+      int paletteSize = 0;
+      boolean empty = true;
+
+      for (int i = 0; i < SECTION_BLOCKS; i++) {
+        short type = base + i < blocks.length ? blocks[base + i] : (short) BlockRegistry.AIR;
+        if (type != BlockRegistry.AIR) empty = false;
+        // Sections rarely hold more than a handful of types, a linear scan beats a map here
+        int index = 0;
+        while (index < paletteSize && palette[index] != type) index++;
+        if (index == paletteSize) palette[paletteSize++] = type;
+        indices[i] = index;
+      }
+      if (empty) continue;
+
+      mask |= 1 << s;
+      out.putShort((short) paletteSize);
+      for (int i = 0; i < paletteSize; i++) {
+        out.putShort(palette[i]);
+      }
+      int bits = bitsFor(paletteSize);
+      out.put((byte) bits);
+      if (bits == 0) continue;
+
+      int perLong = 64 / bits;
+      for (int i = 0; i < SECTION_BLOCKS; i += perLong) {
+        long packed = 0;
+        for (int j = 0; j < perLong && i + j < SECTION_BLOCKS; j++) {
+          packed |= (long) indices[i + j] << (j * bits);
+        }
+        out.putLong(packed);
+      }
+    }
+
+    out.putShort(maskPosition, (short) mask);
+    byte[] result = new byte[out.position()];
+    out.flip().get(result);
+    return result;
+  }
+
+  /** {@link #encode(Chunk)} followed by a fast deflate, for storage. */
+  public static byte[] encodeCompressed(Chunk chunk) {
+    byte[] encoded = encode(chunk);
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(encoded);
+      deflater.finish();
+      byte[] compressed = new byte[encoded.length + 64];
+      int length = 0;
+      while (!deflater.finished()) {
+        if (length == compressed.length) compressed = Arrays.copyOf(compressed, compressed.length * 2);
+        length += deflater.deflate(compressed, length, compressed.length - length);
+      }
+      return Arrays.copyOf(compressed, length);
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /** Reverses {@link #encodeCompressed}. */
+  public static Chunk decodeCompressed(byte[] data, int offset, int length) throws IOException {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(data, offset, length);
+      byte[] decoded = new byte[length * 4];
+      int size = 0;
+      while (!inflater.finished()) {
+        if (size == decoded.length) decoded = Arrays.copyOf(decoded, decoded.length * 2);
+        int inflated = inflater.inflate(decoded, size, decoded.length - size);
+        if (inflated == 0 && inflater.needsInput()) {
+          throw new IOException("Truncated chunk data");
+        }
+        size += inflated;
+      }
+      return decode(ByteBuffer.wrap(decoded, 0, size));
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupt chunk data", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  public static Chunk decode(ByteBuffer in) throws IOException {
+    int chunkX;
+    int chunkZ;
+    try {
+      chunkX = in.getInt();
+      chunkZ = in.getInt();
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated chunk data", e);
+    }
+    return new Chunk(chunkX, chunkZ, decodeBlocks(in));
+  }
+
+  /**
+   * Reads the blocks following the chunk coordinates, indexed like {@link Chunk#copyBlockTypes}.
+   * The data may come from the network, so every section count, palette entry and index is
+   * checked; anything out of range throws instead of reaching {@link BlockRegistry} lookups.
+   */
+  public static short[] decodeBlocks(ByteBuffer in) throws IOException {
+    try {
+      int mask = in.getShort() & 0xFFFF;
+      int sectionCount = 32 - Integer.numberOfLeadingZeros(mask);
+      if (sectionCount > SECTIONS) {
+        throw new IOException("Section mask 0x" + Integer.toHexString(mask) + " is taller than the world");
+      }
+      short[] blocks = new short[sectionCount * SECTION_BLOCKS];
+      short[] palette = new short[SECTION_BLOCKS];
+
+      for (int s = 0; s < sectionCount; s++) {
+        if ((mask & (1 << s)) == 0) continue;
+        int base = s * SECTION_BLOCKS;
+        int paletteSize = in.getShort() & 0xFFFF;
+        if (paletteSize < 1 || paletteSize > SECTION_BLOCKS) {
+          throw new IOException("Bad palette size " + paletteSize + " in section " + s);
+        }
+        for (int i = 0; i < paletteSize; i++) {
+          palette[i] = in.getShort();
+          if (palette[i] < 0 || palette[i] >= BlockRegistry.size()) {
+            throw new IOException("Unknown block id " + palette[i] + " in section " + s);
+          }
+        }
+        int bits = in.get();
+        if (bits < bitsFor(paletteSize) || bits > 16) {
+          throw new IOException("Bad index width " + bits + " for palette of " + paletteSize + " in section " + s);
+        }
+        if (bits == 0) {
+          Arrays.fill(blocks, base, base + SECTION_BLOCKS, palette[0]);
+          continue;
+        }
+
+        int perLong = 64 / bits;
+        long entryMask = (1L << bits) - 1;
+        for (int i = 0; i < SECTION_BLOCKS; i += perLong) {
+          long packed = in.getLong();
+          for (int j = 0; j < perLong && i + j < SECTION_BLOCKS; j++) {
+            int index = (int) ((packed >>> (j * bits)) & entryMask);
+            if (index >= paletteSize) {
+              throw new IOException("Palette index " + index + " out of " + paletteSize + " in section " + s);
+            }
+            blocks[base + i + j] = palette[index];
+          }
+        }
+      }
+      return blocks;
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated chunk data", e);
+    }
+  }
+
+  private static int bitsFor(int paletteSize) {
+    return paletteSize <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(paletteSize - 1);
+  }
+}
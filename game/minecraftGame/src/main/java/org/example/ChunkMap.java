@@ -0,0 +1,204 @@
+package org.example;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The loaded chunks by chunk coordinates, without allocating a key per lookup.
+ *
+ * An open-addressing table with linear probing. The slot for chunk (x, z) comes from
+ * {@link ChunkPos#asLong} multiplied by the golden ratio, which spreads neighbouring
+ * coordinates over the table, unlike ChunkPos.hashCode. A slot holds the chunk itself, and
+ * its coordinates are the key. Removed chunks leave a tombstone until the next resize, so
+ * probe chains stay intact for readers.
+ *
+ * Lookups take no locks and may run on any thread. Changes are serialised on the map and
+ * publish each slot with a release write. A resize builds a new table and swaps it in, so a
+ * lookup that started on the old table can miss a chunk added or see one removed during it,
+ * like a lookup made just before the change.
+ *
+ * Adding and removing also keeps each chunk's links to its four side neighbours up to date
+ * (see {@link Chunk#getNeighbour}). Links are set after the slot is published, so another
+ * thread can briefly find a chunk whose links are still null; fall back to {@link #get} then.
+ */
+public final class ChunkMap {
+  private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Object[].class);
+  private static final Object TOMBSTONE = new Object();
+  private static final int MIN_CAPACITY = 64;
+
+  private volatile Object[] table = new Object[MIN_CAPACITY];
+  private volatile int size = 0;
+  // Written under the map's lock only
+  private int tombstones = 0;
+
+  private static int slot(int chunkX, int chunkZ, int mask) {
+    return (int) ((ChunkPos.asLong(chunkX, chunkZ) * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+  }
+
+  private static boolean matches(Object entry, int chunkX, int chunkZ) {
+    if (entry == TOMBSTONE) return false;
+    Chunk chunk = (Chunk) entry;
+    return chunk.getChunkX() == chunkX && chunk.getChunkZ() == chunkZ;
+  }
+
+  /** The chunk at the given chunk coordinates, or null if it is not loaded. */
+  public Chunk get(int chunkX, int chunkZ) {
+    Object[] slots = table;
+    int mask = slots.length - 1;
+    for (int i = slot(chunkX, chunkZ, mask); ; i = (i + 1) & mask) {
+      Object entry = SLOTS.getAcquire(slots, i);
+      if (entry == null) return null;
+      if (matches(entry, chunkX, chunkZ)) return (Chunk) entry;
+    }
+  }
+
+  public Chunk get(long key) {
+    return get(ChunkPos.getX(key), ChunkPos.getZ(key));
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /** Adds the chunk unless one with its coordinates is loaded. Returns that chunk, or null if added. */
+  public synchronized Chunk putIfAbsent(Chunk chunk) {
+    Chunk existing = get(chunk.getChunkX(), chunk.getChunkZ());
+    if (existing != null) return existing;
+    insert(chunk);
+    return null;
+  }
+
+  /** Adds the chunk, replacing any loaded one with its coordinates. Returns the replaced chunk or null. */
+  public synchronized Chunk put(Chunk chunk) {
+    Chunk existing = get(chunk.getChunkX(), chunk.getChunkZ());
+    if (existing != null) {
+      remove(existing);
+    }
+    insert(chunk);
+    return existing;
+  }
+
+  /** Removes this exact chunk. Returns false if it is not in the map, e.g. already replaced. */
+  public synchronized boolean remove(Chunk chunk) {
+    Object[] slots = table;
+    int mask = slots.length - 1;
+    for (int i = slot(chunk.getChunkX(), chunk.getChunkZ(), mask); ; i = (i + 1) & mask) {
+      Object entry = slots[i];
+      if (entry == null) return false;
+      if (entry == chunk) {
+        SLOTS.setRelease(slots, i, TOMBSTONE);
+        size--;
+        tombstones++;
+        unlink(chunk);
+        return true;
+      }
+    }
+  }
+
+  // Caller holds the lock and has checked the chunk is absent
+  private void insert(Chunk chunk) {
+    if ((size + tombstones + 1) * 2 > table.length) {
+      resize();
+    }
+    Object[] slots = table;
+    int mask = slots.length - 1;
+    int i = slot(chunk.getChunkX(), chunk.getChunkZ(), mask);
+    while (slots[i] != null && slots[i] != TOMBSTONE) {
+      i = (i + 1) & mask;
+    }
+    if (slots[i] == TOMBSTONE) {
+      tombstones--;
+    }
+    SLOTS.setRelease(slots, i, chunk);
+    size++;
+    link(chunk);
+  }
+
+  // Rebuilds at a capacity that keeps the table at most a quarter full, dropping tombstones
+  private void resize() {
+    int capacity = MIN_CAPACITY;
+    while (capacity < (size + 1) * 4) {
+      capacity <<= 1;
+    }
+    Object[] old = table;
+    Object[] slots = new Object[capacity];
+    int mask = capacity - 1;
+    for (Object entry : old) {
+      if (entry == null || entry == TOMBSTONE) continue;
+      Chunk chunk = (Chunk) entry;
+      int i = slot(chunk.getChunkX(), chunk.getChunkZ(), mask);
+      while (slots[i] != null) {
+        i = (i + 1) & mask;
+      }
+      slots[i] = chunk;
+    }
+    tombstones = 0;
+    table = slots;
+  }
+
+  private void link(Chunk chunk) {
+    int x = chunk.getChunkX(), z = chunk.getChunkZ();
+    Chunk west = get(x - 1, z), east = get(x + 1, z), north = get(x, z - 1), south = get(x, z + 1);
+    chunk.west = west;
+    chunk.east = east;
+    chunk.north = north;
+    chunk.south = south;
+    if (west != null) west.east = chunk;
+    if (east != null) east.west = chunk;
+    if (north != null) north.south = chunk;
+    if (south != null) south.north = chunk;
+  }
+
+  private void unlink(Chunk chunk) {
+    if (chunk.west != null) chunk.west.east = null;
+    if (chunk.east != null) chunk.east.west = null;
+    if (chunk.north != null) chunk.north.south = null;
+    if (chunk.south != null) chunk.south.north = null;
+    chunk.west = chunk.east = chunk.north = chunk.south = null;
+  }
+
+  /** A live view of the chunks. Iterators never block changes and may or may not see ones made meanwhile. */
+  public Collection<Chunk> values() {
+    return new AbstractCollection<>() {
+      @Override
+      public Iterator<Chunk> iterator() {
+        Object[] slots = table;
+        return new Iterator<>() {
+          private int index = 0;
+          // Read once, as the slot can turn into a tombstone between hasNext and next
+          private Chunk pending = advance();
+
+          private Chunk advance() {
+            while (index < slots.length) {
+              Object entry = SLOTS.getAcquire(slots, index++);
+              if (entry != null && entry != TOMBSTONE) return (Chunk) entry;
+            }
+            return null;
+          }
+
+          @Override
+          public boolean hasNext() {
+            return pending != null;
+          }
+
+          @Override
+          public Chunk next() {
+            if (pending == null) throw new NoSuchElementException();
+            Chunk chunk = pending;
+            pending = advance();
+            return chunk;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+}
@@ -0,0 +1,189 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Turns a chunk into a list of visible block faces with per-vertex ambient occlusion.
+ *
+ * The chunk is meshed one 16x16x16 section at a time. Each section is first copied,
+ * together with a one block border taken from the neighbouring chunks, into a padded
+ * 18x18x18 array so face culling and the AO samples are plain array reads.
+ *
+ * Vertices use the 8 byte {@link VertexFormat}. Quads are written as 4 vertices
+ * that share the index pattern 0,1,2 2,3,0; when the AO values would make that diagonal
+ * look anisotropic the vertices are rotated by one so the other diagonal is used instead.
+ *
+ * Budget: a section should mesh in under {@link #SECTION_BUDGET_NANOS} (1 ms) with AO
+ * enabled. Timings go to {@link Metrics} as "mesh.section"; sections over budget are
+ * counted as "mesh.overBudget". Run with -Dgame.ao=false to compare against meshing
+ * without AO.
+ */
+public class ChunkMesher {
+  public static final long SECTION_BUDGET_NANOS = 1_000_000L;
+  public static final boolean AMBIENT_OCCLUSION = !"false".equals(System.getProperty("game.ao"));
+
+  private static final int SIZE = World.CHUNK_SIZE;
+  private static final int PAD = SIZE + 2;
+  private static final int[] STRIDE = {1, PAD * PAD, PAD}; // x, y, z in the padded array
+
+  // Face order: +X, -X, +Y, -Y, +Z, -Z
+  private static final int[] FACE_AXIS = {0, 0, 1, 1, 2, 2};
+  private static final int[] FACE_SIGN = {1, -1, 1, -1, 1, -1};
+  // Tangent axes chosen so that u x v points along the face normal (counter-clockwise from outside)
+  private static final int[] FACE_U = {1, 2, 2, 0, 0, 1};
+  private static final int[] FACE_V = {2, 1, 0, 2, 1, 0};
+  private static final int[][] CORNERS = {{0, 0}, {1, 0}, {1, 1}, {0, 1}};
+
+  private static final int[] FACE_DELTA = new int[6];
+  private static final int[][][] CORNER_OFFSET = new int[6][4][3];
+  private static final int[][] SIDE_A = new int[6][4];
+  private static final int[][] SIDE_B = new int[6][4];
+
+  static {
+    for (int f = 0; f < 6; f++) {
+      int axis = FACE_AXIS[f], u = FACE_U[f], v = FACE_V[f];
+      FACE_DELTA[f] = FACE_SIGN[f] * STRIDE[axis];
+      for (int k = 0; k < 4; k++) {
+        int cu = CORNERS[k][0], cv = CORNERS[k][1];
+        CORNER_OFFSET[f][k][axis] = FACE_SIGN[f] > 0 ? 1 : 0;
+        CORNER_OFFSET[f][k][u] = cu;
+        CORNER_OFFSET[f][k][v] = cv;
+        // The two edge neighbours of this corner, in the layer of blocks in front of the face
+        SIDE_A[f][k] = (cu == 1 ? 1 : -1) * STRIDE[u];
+        SIDE_B[f][k] = (cv == 1 ? 1 : -1) * STRIDE[v];
+      }
+    }
+  }
+
+  private final short[] column = new short[SIZE * SIZE * World.WORLD_HEIGHT];
+  private final short[] padded = new short[PAD * PAD * PAD];
+  private final ChunkSnapshot[] snapshots = new ChunkSnapshot[9];
+  private final int[] ao = new int[4];
+  private int[] vertices = new int[VertexFormat.VERTEX_INTS * 4 * 4096];
+  private int size;
+
+  /**
+   * Meshes the centre chunk of a 3x3 neighbourhood, indexed (dz + 1) * 3 + (dx + 1).
+   * Missing neighbours are treated as air. The result stays valid until the next call.
+   *
+   * Every chunk is read through one snapshot taken up front, so edits landing while the
+   * mesh is built show up in the next rebuild rather than half in this one.
+   */
+  public void build(Chunk[] neighbourhood) {
+    for (int i = 0; i < 9; i++) {
+      snapshots[i] = neighbourhood[i] == null ? null : neighbourhood[i].snapshot();
+    }
+    ChunkSnapshot chunk = snapshots[4];
+    size = 0;
+    int height = chunk.getHeight();
+    if (height == 0) return;
+
+    chunk.copyBlockTypes(column);
+    for (int sectionY = 0; sectionY * SIZE < height; sectionY++) {
+      long start = System.nanoTime();
+      copySection(snapshots, sectionY * SIZE);
+      meshSection(sectionY * SIZE);
+      long elapsed = System.nanoTime() - start;
+      Metrics.recordTime("mesh.section", elapsed);
+      if (elapsed > SECTION_BUDGET_NANOS) {
+        Metrics.increment("mesh.overBudget");
+      }
+    }
+  }
+
+  public int[] getVertices() {
+    return vertices;
+  }
+
+  /** Number of ints written by the last {@link #build} call. */
+  public int size() {
+    return size;
+  }
+
+  private void copySection(ChunkSnapshot[] neighbourhood, int baseY) {
+    Arrays.fill(padded, (short) BlockRegistry.AIR);
+    int height = neighbourhood[4].getHeight();
+
+    for (int py = 0; py < PAD; py++) {
+      int y = baseY + py - 1;
+      if (y < 0 || y >= World.WORLD_HEIGHT) continue;
+      for (int pz = 0; pz < PAD; pz++) {
+        int z = pz - 1;
+        int row = (py * PAD + pz) * PAD;
+        if (z >= 0 && z < SIZE) {
+          // Interior row comes straight from the column copy, only its two ends are borders
+          if (y < height) {
+            System.arraycopy(column, (y * SIZE + z) * SIZE, padded, row + 1, SIZE);
+          }
+          padded[row] = borderType(neighbourhood, -1, y, z);
+          padded[row + PAD - 1] = borderType(neighbourhood, SIZE, y, z);
+        } else {
+          for (int px = 0; px < PAD; px++) {
+            padded[row + px] = borderType(neighbourhood, px - 1, y, z);
+          }
+        }
+      }
+    }
+  }
+
+  private static short borderType(ChunkSnapshot[] neighbourhood, int x, int y, int z) {
+    int dx = x < 0 ? -1 : x >= SIZE ? 1 : 0;
+    int dz = z < 0 ? -1 : z >= SIZE ? 1 : 0;
+    ChunkSnapshot neighbour = neighbourhood[(dz + 1) * 3 + (dx + 1)];
+    if (neighbour == null) return (short) BlockRegistry.AIR;
+    return (short) neighbour.getBlockType(x & (SIZE - 1), y, z & (SIZE - 1));
+  }
+
+  private void meshSection(int baseY) {
+    for (int y = 1; y <= SIZE; y++) {
+      for (int z = 1; z <= SIZE; z++) {
+        int i = (y * PAD + z) * PAD + 1;
+        for (int x = 1; x <= SIZE; x++, i++) {
+          int type = padded[i];
+          if (type == BlockRegistry.AIR) continue;
+
+          for (int f = 0; f < 6; f++) {
+            int front = i + FACE_DELTA[f];
+            int neighbour = padded[front];
+            // Faces are hidden by opaque blocks and between two blocks of the same type
+            if (BlockRegistry.isOpaque(neighbour) || neighbour == type) continue;
+            emitFace(f, front, type, x - 1, baseY + y - 1, z - 1);
+          }
+        }
+      }
+    }
+  }
+
+  private void emitFace(int face, int front, int type, int x, int y, int z) {
+    for (int k = 0; k < 4; k++) {
+      ao[k] = AMBIENT_OCCLUSION ? vertexAO(front, SIDE_A[face][k], SIDE_B[face][k]) : 3;
+    }
+
+    ensureCapacity(VertexFormat.VERTEX_INTS * 4);
+    // No lighting engine yet: every face is fully sky lit
+    int data = VertexFormat.packData(BlockRegistry.getTextureLayer(type), VertexFormat.MAX_LIGHT, 0);
+    // Rotate the quad so the shared 0-2 diagonal runs between the brighter pair of corners
+    int first = ao[0] + ao[2] < ao[1] + ao[3] ? 1 : 0;
+    for (int n = 0; n < 4; n++) {
+      int k = (first + n) & 3;
+      int[] corner = CORNER_OFFSET[face][k];
+      vertices[size++] = VertexFormat.packPosition(x + corner[0], y + corner[1], z + corner[2], face, ao[k]);
+      vertices[size++] = data;
+    }
+  }
+
+  // Classic 0..3 vertex occlusion from the two edge neighbours and the corner neighbour
+  private int vertexAO(int front, int sideA, int sideB) {
+    int a = BlockRegistry.isOpaque(padded[front + sideA]) ? 1 : 0;
+    int b = BlockRegistry.isOpaque(padded[front + sideB]) ? 1 : 0;
+    if (a == 1 && b == 1) return 0;
+    int c = BlockRegistry.isOpaque(padded[front + sideA + sideB]) ? 1 : 0;
+    return 3 - (a + b + c);
+  }
+
+  private void ensureCapacity(int extra) {
+    if (size + extra > vertices.length) {
+      vertices = Arrays.copyOf(vertices, vertices.length * 2);
+    }
+  }
+}
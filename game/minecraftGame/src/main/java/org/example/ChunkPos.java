@@ -23,6 +23,19 @@ public class ChunkPos {
     return result;
   }
 
+  /** Packs chunk coordinates into one long, x in the high half and z in the low half. */
+  public static long asLong(int x, int z) {
+    return ((long) x << 32) | (z & 0xFFFFFFFFL);
+  }
+
+  public static int getX(long key) {
+    return (int) (key >> 32);
+  }
+
+  public static int getZ(long key) {
+    return (int) key;
+  }
+
   @Override
   public String toString() {
     return "[" + x + "," + z + "]";
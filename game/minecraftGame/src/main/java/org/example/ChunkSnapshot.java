@@ -0,0 +1,70 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Immutable view of a chunk's blocks at one point in time. Sections are 16 block tall
+ * slices indexed (y * 16 + z) * 16 + x; a null section is all air.
+ *
+ * A snapshot and the section arrays it references are never written after they are
+ * published, so any thread may read one without locking. Edits build a new snapshot that
+ * shares every section they did not touch, see {@link Chunk#edit()}.
+ */
+public final class ChunkSnapshot {
+  public static final int SECTION_SIZE = World.CHUNK_SIZE;
+  public static final int SECTION_BLOCKS = SECTION_SIZE * SECTION_SIZE * SECTION_SIZE;
+  public static final int SECTIONS = World.WORLD_HEIGHT / SECTION_SIZE;
+
+  static final ChunkSnapshot EMPTY = new ChunkSnapshot(new short[SECTIONS][], 0, 0);
+
+  private final short[][] sections;
+  private final int height;
+  private final long version;
+
+  ChunkSnapshot(short[][] sections, int height, long version) {
+    this.sections = sections;
+    this.height = height;
+    this.version = version;
+  }
+
+  public int getBlockType(int x, int y, int z) {
+    if (x < 0 || x >= SECTION_SIZE || z < 0 || z >= SECTION_SIZE || y < 0 || y >= World.WORLD_HEIGHT) {
+      return BlockRegistry.AIR;
+    }
+    short[] section = sections[y >> 4];
+    if (section == null) return BlockRegistry.AIR;
+    return section[(((y & 15) * SECTION_SIZE) + z) * SECTION_SIZE + x];
+  }
+
+  public boolean isBlockAt(int x, int y, int z) {
+    return BlockRegistry.isSolid(getBlockType(x, y, z));
+  }
+
+  /** One above the highest non-air block; every y at or above this is air. */
+  public int getHeight() {
+    return height;
+  }
+
+  /** Increases by one with every committed edit of the chunk. */
+  public long getVersion() {
+    return version;
+  }
+
+  /** The blocks of one section, or null if it is all air. Must not be modified. */
+  short[] getSection(int sectionY) {
+    return sections[sectionY];
+  }
+
+  /** Writes every block below {@link #getHeight()} into {@code dst}, indexed (y * 16 + z) * 16 + x. */
+  public void copyBlockTypes(short[] dst) {
+    int blocks = height * SECTION_SIZE * SECTION_SIZE;
+    for (int s = 0; s * SECTION_BLOCKS < blocks; s++) {
+      int length = Math.min(SECTION_BLOCKS, blocks - s * SECTION_BLOCKS);
+      if (sections[s] == null) {
+        Arrays.fill(dst, s * SECTION_BLOCKS, s * SECTION_BLOCKS + length, (short) BlockRegistry.AIR);
+      } else {
+        System.arraycopy(sections[s], 0, dst, s * SECTION_BLOCKS, length);
+      }
+    }
+  }
+}
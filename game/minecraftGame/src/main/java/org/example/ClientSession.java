@@ -0,0 +1,57 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+/** Server-side state of one connected player. Only touched by the server thread. */
+class ClientSession {
+  private static final int INBOUND_BUFFER = 64 * 1024;
+
+  final int playerId;
+  final SocketChannel channel;
+  final ByteBuffer inbound = ByteBuffer.allocate(INBOUND_BUFFER);
+  final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+  long queuedBytes = 0;
+
+  boolean welcomed = false;
+  int viewDistance;
+  float x, y, z;
+  boolean moved = false;
+
+  // Chunks the client holds, as ChunkPos.asLong keys
+  final Set<Long> sentChunks = new HashSet<>();
+  // Sent chunks that changed wholesale since and have to be sent again
+  final Set<Long> staleChunks = new HashSet<>();
+  int centreChunkX = Integer.MIN_VALUE;
+  int centreChunkZ = Integer.MIN_VALUE;
+
+  // Token bucket for chunk data, refilled every tick
+  long bandwidthTokens = 0;
+
+  ClientSession(int playerId, SocketChannel channel) {
+    this.playerId = playerId;
+    this.channel = channel;
+  }
+
+  void send(ByteBuffer frame) {
+    queuedBytes += frame.remaining();
+    outbound.add(frame);
+  }
+
+  /** Writes as much of the queue as the socket takes. Returns true once the queue is empty. */
+  boolean flush() throws IOException {
+    while (!outbound.isEmpty()) {
+      ByteBuffer head = outbound.peek();
+      int written = channel.write(head);
+      queuedBytes -= written;
+      Metrics.add("server.bytesOut", written);
+      if (head.hasRemaining()) return false;
+      outbound.poll();
+    }
+    return true;
+  }
+}
@@ -0,0 +1,42 @@
+package org.example;
+
+/**
+ * Blocks copied out of the world by {@link World#copy}, stored as one short per block
+ * indexed (y * sizeZ + z) * sizeX + x relative to the copied box's minimum corner.
+ */
+public final class Clipboard {
+  private final int sizeX, sizeY, sizeZ;
+  private final short[] blocks;
+
+  Clipboard(int sizeX, int sizeY, int sizeZ) {
+    this.sizeX = sizeX;
+    this.sizeY = sizeY;
+    this.sizeZ = sizeZ;
+    this.blocks = new short[sizeX * sizeY * sizeZ];
+  }
+
+  public int getSizeX() {
+    return sizeX;
+  }
+
+  public int getSizeY() {
+    return sizeY;
+  }
+
+  public int getSizeZ() {
+    return sizeZ;
+  }
+
+  public int getBlockType(int x, int y, int z) {
+    return blocks[index(x, y, z)];
+  }
+
+  int index(int x, int y, int z) {
+    return (y * sizeZ + z) * sizeX + x;
+  }
+
+  /** The backing array, for row copies by {@link World}. */
+  short[] blocks() {
+    return blocks;
+  }
+}
@@ -0,0 +1,165 @@
+package org.example;
+
+/**
+ * 3D terrain density: positive is solid, zero or below is air. On top of the heightmap
+ * surface it adds noise that produces overhangs and carves caves out underground.
+ *
+ * The noise is only evaluated on a lattice with one point every {@link #CELL_XZ} blocks
+ * horizontally and {@link #CELL_Y} vertically; the blocks in between are trilinearly
+ * interpolated. A lattice column serves every chunk that touches it, so columns on chunk
+ * borders are kept in a small lock-free cache instead of being computed once per chunk.
+ *
+ * Turned on with -Dgame.terrain=density. -Dgame.terrain=density-voxel evaluates the noise at
+ * every block instead, as a baseline for comparing "chunk.generate" times.
+ */
+public class DensityField {
+  public static final int CELL_XZ = 4;
+  public static final int CELL_Y = 8;
+  /** Everything at or above this height is air. */
+  public static final int TOP = 128;
+
+  private static final int SIZE = World.CHUNK_SIZE;
+  private static final int CELLS_XZ = SIZE / CELL_XZ;
+  private static final int CELLS_Y = TOP / CELL_Y;
+  private static final int POINTS_XZ = CELLS_XZ + 1;
+  private static final int POINTS_Y = CELLS_Y + 1;
+  private static final int CACHE_SIZE = 4096;
+
+  // Immutable, so a column read through the racy cache array is always complete
+  private static final class Column {
+    final long key;
+    final float[] values;
+
+    Column(long key, float[] values) {
+      this.key = key;
+      this.values = values;
+    }
+  }
+
+  private final PerlinNoise noise;
+  private final boolean perVoxel;
+  private final Column[] cache = new Column[CACHE_SIZE];
+
+  public DensityField(PerlinNoise noise, boolean perVoxel) {
+    this.noise = noise;
+    this.perVoxel = perVoxel;
+  }
+
+  /** The density stage selected by -Dgame.terrain, or null for plain heightmap terrain. */
+  public static DensityField fromOptions(PerlinNoise noise) {
+    String terrain = terrainOption();
+    if (terrain.equals("density")) return new DensityField(noise, false);
+    if (terrain.equals("density-voxel")) return new DensityField(noise, true);
+    return null;
+  }
+
+  /** The terrain kind selected by -Dgame.terrain: heightmap, density or density-voxel. */
+  public static String terrainOption() {
+    String terrain = System.getProperty("game.terrain", "heightmap");
+    return terrain.equals("density") || terrain.equals("density-voxel") ? terrain : "heightmap";
+  }
+
+  /** Writes the density of every block below {@link #TOP} in a chunk, indexed (y * 16 + z) * 16 + x. */
+  public void sample(int chunkX, int chunkZ, float[] out) {
+    int baseX = chunkX * SIZE;
+    int baseZ = chunkZ * SIZE;
+    if (perVoxel) {
+      // The heightmap only depends on the column, so both paths evaluate it once per column
+      // and the comparison measures just the 3D noise
+      double[] surface = new double[SIZE * SIZE];
+      for (int z = 0; z < SIZE; z++) {
+        for (int x = 0; x < SIZE; x++) {
+          surface[z * SIZE + x] = Chunk.terrainHeight(noise, baseX + x, baseZ + z);
+        }
+      }
+      for (int y = 0; y < TOP; y++) {
+        for (int z = 0; z < SIZE; z++) {
+          for (int x = 0; x < SIZE; x++) {
+            out[(y * SIZE + z) * SIZE + x] = density(baseX + x, y, baseZ + z, surface[z * SIZE + x]);
+          }
+        }
+      }
+      return;
+    }
+
+    float[][] columns = new float[POINTS_XZ * POINTS_XZ][];
+    for (int lz = 0; lz < POINTS_XZ; lz++) {
+      for (int lx = 0; lx < POINTS_XZ; lx++) {
+        columns[lz * POINTS_XZ + lx] = column(chunkX * CELLS_XZ + lx, chunkZ * CELLS_XZ + lz);
+      }
+    }
+
+    for (int cz = 0; cz < CELLS_XZ; cz++) {
+      for (int cx = 0; cx < CELLS_XZ; cx++) {
+        float[] c00 = columns[cz * POINTS_XZ + cx];
+        float[] c10 = columns[cz * POINTS_XZ + cx + 1];
+        float[] c01 = columns[(cz + 1) * POINTS_XZ + cx];
+        float[] c11 = columns[(cz + 1) * POINTS_XZ + cx + 1];
+        for (int cy = 0; cy < CELLS_Y; cy++) {
+          interpolateCell(out, cx * CELL_XZ, cy * CELL_Y, cz * CELL_XZ,
+              c00[cy], c10[cy], c01[cy], c11[cy], c00[cy + 1], c10[cy + 1], c01[cy + 1], c11[cy + 1]);
+        }
+      }
+    }
+  }
+
+  // Corner values are named by their x, z offset; the second four are one lattice step higher
+  private static void interpolateCell(float[] out, int x0, int y0, int z0,
+      float b00, float b10, float b01, float b11, float t00, float t10, float t01, float t11) {
+    for (int dy = 0; dy < CELL_Y; dy++) {
+      float ty = dy / (float) CELL_Y;
+      float v00 = b00 + (t00 - b00) * ty;
+      float v10 = b10 + (t10 - b10) * ty;
+      float v01 = b01 + (t01 - b01) * ty;
+      float v11 = b11 + (t11 - b11) * ty;
+      for (int dz = 0; dz < CELL_XZ; dz++) {
+        float tz = dz / (float) CELL_XZ;
+        float left = v00 + (v01 - v00) * tz;
+        float right = v10 + (v11 - v10) * tz;
+        int row = ((y0 + dy) * SIZE + z0 + dz) * SIZE + x0;
+        for (int dx = 0; dx < CELL_XZ; dx++) {
+          out[row + dx] = left + (right - left) * (dx / (float) CELL_XZ);
+        }
+      }
+    }
+  }
+
+  // Densities at every lattice height of one lattice column, cached by lattice coordinates
+  private float[] column(int latticeX, int latticeZ) {
+    long key = ChunkPos.asLong(latticeX, latticeZ);
+    int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 52) & (CACHE_SIZE - 1);
+    Column cached = cache[slot];
+    if (cached != null && cached.key == key) {
+      Metrics.increment("density.cacheHit");
+      return cached.values;
+    }
+
+    Metrics.increment("density.cacheMiss");
+    float[] values = new float[POINTS_Y];
+    int x = latticeX * CELL_XZ;
+    int z = latticeZ * CELL_XZ;
+    double surface = Chunk.terrainHeight(noise, x, z);
+    for (int ly = 0; ly < POINTS_Y; ly++) {
+      values[ly] = density(x, ly * CELL_Y, z, surface);
+    }
+    // Two threads may compute the same column; either result is correct
+    cache[slot] = new Column(key, values);
+    return values;
+  }
+
+  // surface is Chunk.terrainHeight for the column, passed in so callers compute it once per column
+  private float density(int x, int y, int z, double surface) {
+    // Bedrock layer
+    if (y == 0) return 1.0f;
+    double density = (surface - y) / 12.0;
+
+    // Overhangs: low frequency 3D noise pushes the surface in and out
+    density += noise.octaveNoise(x / 40.0, y / 24.0, z / 40.0, 3, 0.5) * 0.6;
+
+    // Caves: hollow out wherever a second noise field is high, keeping a roof under the surface
+    double cave = noise.noise(x / 24.0 + 500.0, y / 16.0, z / 24.0 + 500.0);
+    double roof = Math.min(1.0, Math.max(0.0, (surface - 4 - y) / 6.0));
+    density -= Math.max(0.0, cave - 0.25) * 8.0 * roof;
+    return (float) density;
+  }
+}
@@ -0,0 +1,260 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Mobs and dropped items, stored as one primitive array per component so a tick walks
+ * memory linearly. Entities are addressed by their index, which changes when another
+ * entity is removed (the last one is swapped into the hole).
+ *
+ * A tick runs in two parallel passes over batches of {@link #BATCH_SIZE} entities: the first
+ * decides velocities and reads neighbours through the {@link SpatialHash}, the second moves
+ * each entity with the same box collision as the player. Each pass only writes the entity's
+ * own slots, so the batches need no locking.
+ *
+ * spawn, remove and tick must all be called from the same thread.
+ */
+public class EntityStore {
+  public static final byte MOB = 0;
+  public static final byte ITEM = 1;
+
+  private static final int BATCH_SIZE = 1024;
+  private static final float GRAVITY = 9.8f;
+  private static final float TERMINAL_VELOCITY = 20.0f;
+  private static final float MOB_SPEED = 1.5f;
+  private static final float SEPARATION_RADIUS = 1.0f;
+  private static final float SEPARATION_STRENGTH = 2.0f;
+  private static final float ITEM_FRICTION = 0.6f;
+  private static final float MIN_Y = -64.0f;
+  private static final int MAX_NEIGHBOURS = 16;
+
+  private int count = 0;
+  private float[] posX = new float[0];
+  private float[] posY = new float[0];
+  private float[] posZ = new float[0];
+  private float[] velX = new float[0];
+  private float[] velY = new float[0];
+  private float[] velZ = new float[0];
+  private float[] halfWidth = new float[0];
+  private float[] height = new float[0];
+  private float[] heading = new float[0];
+  private byte[] type = new byte[0];
+  private boolean[] onGround = new boolean[0];
+  private boolean[] dead = new boolean[0];
+
+  private final SpatialHash spatialHash = new SpatialHash(2.0f);
+  private final ThreadLocal<int[]> neighbourScratch = ThreadLocal.withInitial(() -> new int[MAX_NEIGHBOURS]);
+  private boolean hashStale = true;
+  private int tickCount = 0;
+
+  /** Adds an entity and returns its index. */
+  public int spawn(byte entityType, float x, float y, float z, float entityHalfWidth, float entityHeight) {
+    if (count == posX.length) {
+      grow(Math.max(64, count * 2));
+    }
+    int i = count++;
+    posX[i] = x;
+    posY[i] = y;
+    posZ[i] = z;
+    velX[i] = 0;
+    velY[i] = 0;
+    velZ[i] = 0;
+    halfWidth[i] = entityHalfWidth;
+    height[i] = entityHeight;
+    heading[i] = (float) (random(i, tickCount) * Math.PI * 2);
+    type[i] = entityType;
+    onGround[i] = false;
+    dead[i] = false;
+    hashStale = true;
+    return i;
+  }
+
+  public int spawnMob(float x, float y, float z) {
+    return spawn(MOB, x, y, z, 0.3f, 1.8f);
+  }
+
+  public int spawnItem(float x, float y, float z) {
+    return spawn(ITEM, x, y, z, 0.125f, 0.25f);
+  }
+
+  /** Removes the entity at index i by moving the last entity into its slot. */
+  public void remove(int i) {
+    int last = --count;
+    if (i != last) {
+      posX[i] = posX[last];
+      posY[i] = posY[last];
+      posZ[i] = posZ[last];
+      velX[i] = velX[last];
+      velY[i] = velY[last];
+      velZ[i] = velZ[last];
+      halfWidth[i] = halfWidth[last];
+      height[i] = height[last];
+      heading[i] = heading[last];
+      type[i] = type[last];
+      onGround[i] = onGround[last];
+      dead[i] = dead[last];
+    }
+    hashStale = true;
+  }
+
+  public int size() {
+    return count;
+  }
+
+  public float getX(int i) {
+    return posX[i];
+  }
+
+  public float getY(int i) {
+    return posY[i];
+  }
+
+  public float getZ(int i) {
+    return posZ[i];
+  }
+
+  public byte getType(int i) {
+    return type[i];
+  }
+
+  /** Writes up to out.length indices of entities within radius of the point into out and returns the count. */
+  public int queryNearby(float x, float y, float z, float radius, int[] out) {
+    if (hashStale) {
+      spatialHash.build(posX, posY, posZ, count);
+      hashStale = false;
+    }
+    return spatialHash.query(x, y, z, radius, out);
+  }
+
+  public void tick(World world, float dt) {
+    long start = System.nanoTime();
+    tickCount++;
+    if (hashStale) {
+      spatialHash.build(posX, posY, posZ, count);
+      hashStale = false;
+    }
+
+    int batches = (count + BATCH_SIZE - 1) / BATCH_SIZE;
+    IntStream.range(0, batches).parallel().forEach(batch -> {
+      int end = Math.min(count, (batch + 1) * BATCH_SIZE);
+      for (int i = batch * BATCH_SIZE; i < end; i++) {
+        steer(i, dt);
+      }
+    });
+    IntStream.range(0, batches).parallel().forEach(batch -> {
+      int end = Math.min(count, (batch + 1) * BATCH_SIZE);
+      for (int i = batch * BATCH_SIZE; i < end; i++) {
+        move(world, i, dt);
+      }
+    });
+
+    // Removing swaps entities around, so it waits until the parallel passes are done
+    for (int i = count - 1; i >= 0; i--) {
+      if (dead[i]) remove(i);
+    }
+    // Rebuild for the new positions so queries between ticks and the next steer pass see them
+    spatialHash.build(posX, posY, posZ, count);
+    hashStale = false;
+
+    Metrics.recordTime("entities.tick", System.nanoTime() - start);
+    Metrics.setGauge("entities.count", count);
+  }
+
+  // Only reads positions, which do not change until move()
+  private void steer(int i, float dt) {
+    if (type[i] == MOB) {
+      // Wander: keep a heading and occasionally pick a new one
+      if (random(i, tickCount) < 0.02) {
+        heading[i] = (float) (random(i + 0x9E3779B9, tickCount) * Math.PI * 2);
+      }
+      float targetX = (float) Math.cos(heading[i]) * MOB_SPEED;
+      float targetZ = (float) Math.sin(heading[i]) * MOB_SPEED;
+
+      // Push away from mobs standing too close
+      int[] neighbours = neighbourScratch.get();
+      int found = spatialHash.query(posX[i], posY[i], posZ[i], SEPARATION_RADIUS, neighbours);
+      for (int n = 0; n < found; n++) {
+        int other = neighbours[n];
+        if (other == i) continue;
+        float dx = posX[i] - posX[other];
+        float dz = posZ[i] - posZ[other];
+        float distanceSquared = dx * dx + dz * dz;
+        if (distanceSquared < 1e-6f) continue;
+        float push = SEPARATION_STRENGTH / (float) Math.sqrt(distanceSquared);
+        targetX += dx * push;
+        targetZ += dz * push;
+      }
+      velX[i] = targetX;
+      velZ[i] = targetZ;
+    } else if (onGround[i]) {
+      velX[i] *= ITEM_FRICTION;
+      velZ[i] *= ITEM_FRICTION;
+    }
+
+    if (!onGround[i]) {
+      velY[i] = Math.max(velY[i] - GRAVITY * dt, -TERMINAL_VELOCITY);
+    } else if (velY[i] < 0) {
+      velY[i] = 0;
+    }
+  }
+
+  private void move(World world, int i, float dt) {
+    float x = posX[i], y = posY[i], z = posZ[i];
+    // Freeze entities outside the simulation distance, and in unloaded chunks rather than letting them fall through
+    if (!world.isSimulated((int) Math.floor(x) >> 4, (int) Math.floor(z) >> 4)) return;
+
+    float w = halfWidth[i], h = height[i];
+    // Resolve each axis separately like Physics does for the player
+    float nextX = x + velX[i] * dt;
+    if (world.isBoxBlocked(nextX, y, z, w, h)) {
+      velX[i] = 0;
+      if (type[i] == MOB && onGround[i]) velY[i] = 5.0f; // hop up one block
+    } else {
+      x = nextX;
+    }
+    float nextY = y + velY[i] * dt;
+    if (world.isBoxBlocked(x, nextY, z, w, h)) {
+      velY[i] = 0;
+    } else {
+      y = nextY;
+    }
+    float nextZ = z + velZ[i] * dt;
+    if (world.isBoxBlocked(x, y, nextZ, w, h)) {
+      velZ[i] = 0;
+      if (type[i] == MOB && onGround[i]) velY[i] = 5.0f;
+    } else {
+      z = nextZ;
+    }
+
+    posX[i] = x;
+    posY[i] = y;
+    posZ[i] = z;
+    onGround[i] = world.isBlockAt((int) Math.floor(x), (int) Math.floor(y - 0.1f), (int) Math.floor(z));
+    dead[i] = y < MIN_Y;
+  }
+
+  private void grow(int capacity) {
+    posX = Arrays.copyOf(posX, capacity);
+    posY = Arrays.copyOf(posY, capacity);
+    posZ = Arrays.copyOf(posZ, capacity);
+    velX = Arrays.copyOf(velX, capacity);
+    velY = Arrays.copyOf(velY, capacity);
+    velZ = Arrays.copyOf(velZ, capacity);
+    halfWidth = Arrays.copyOf(halfWidth, capacity);
+    height = Arrays.copyOf(height, capacity);
+    heading = Arrays.copyOf(heading, capacity);
+    type = Arrays.copyOf(type, capacity);
+    onGround = Arrays.copyOf(onGround, capacity);
+    dead = Arrays.copyOf(dead, capacity);
+  }
+
+  // Deterministic per-entity noise in [0, 1), so batches need no shared Random
+  private static double random(int i, int tick) {
+    long h = i * 0x9E3779B97F4A7C15L + tick * 0xC2B2AE3D27D4EB4FL;
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    return (h >>> 11) * 0x1.0p-53;
+  }
+}
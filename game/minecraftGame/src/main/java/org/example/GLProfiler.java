@@ -0,0 +1,184 @@
+package org.example;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.opengl.GLCapabilities;
+
+/**
+ * Optional accounting of the GL calls made by the render path, enabled with
+ * -Dgame.glProfile=true.
+ *
+ * The wrappers below have the same names and signatures as the LWJGL functions. Classes on
+ * the render path import them one by one (import static org.example.GLProfiler.glDrawElements),
+ * which takes precedence over the GL11.* wildcard import, so call sites read like plain GL.
+ * When profiling is off each wrapper is a single check of a static final flag.
+ *
+ * Per frame, call counts go to {@link Metrics} as "gl.&lt;function&gt;" counters and a
+ * "gl.callsPerFrame" gauge. Render passes wrapped in {@link #beginPass}/{@link #endPass} are
+ * timed on the GPU with GL_TIME_ELAPSED queries and recorded as "gpu.&lt;pass&gt;" timers.
+ * Each pass has two queries used on alternate frames, and a result is only read once the
+ * driver reports it available, so reading timings never stalls the pipeline. Timer queries
+ * are core in GL 3.3 and also work on Mesa's llvmpipe.
+ */
+public final class GLProfiler {
+  public static final boolean ENABLED = Boolean.getBoolean("game.glProfile");
+
+  private static final String[] CALL_NAMES = {
+      "glClear", "glUseProgram", "glGetInteger", "glGetUniformLocation", "glUniformMatrix4fv",
+      "glActiveTexture", "glBindTexture", "glBindVertexArray", "glBindBuffer", "glBufferData",
+      "glDrawElements"
+  };
+  private static final int CLEAR = 0, USE_PROGRAM = 1, GET_INTEGER = 2, GET_UNIFORM_LOCATION = 3,
+      UNIFORM_MATRIX = 4, ACTIVE_TEXTURE = 5, BIND_TEXTURE = 6, BIND_VERTEX_ARRAY = 7,
+      BIND_BUFFER = 8, BUFFER_DATA = 9, DRAW_ELEMENTS = 10;
+
+  // Render thread only
+  private static final int[] frameCounts = new int[CALL_NAMES.length];
+  private static final Map<String, int[]> passQueries = new HashMap<>();
+  private static final Map<String, boolean[]> passPending = new HashMap<>();
+  private static boolean timerQueries = false;
+  private static long frame = 0;
+  private static String activePass = null;
+
+  private GLProfiler() {
+  }
+
+  /** Call once after the GL context is created. */
+  public static void init() {
+    if (!ENABLED) return;
+    GLCapabilities capabilities = GL.getCapabilities();
+    timerQueries = capabilities.OpenGL33 || capabilities.GL_ARB_timer_query;
+    if (!timerQueries) {
+      System.err.println("GL timer queries unavailable, only counting calls");
+    }
+  }
+
+  /** Starts GPU timing of a render pass. Passes cannot nest, GL allows one timer query at a time. */
+  public static void beginPass(String name) {
+    if (!ENABLED || !timerQueries) return;
+    if (activePass != null) {
+      throw new IllegalStateException("Pass " + name + " started inside pass " + activePass);
+    }
+    int[] queries = passQueries.computeIfAbsent(name, key -> new int[] {GL15.glGenQueries(), GL15.glGenQueries()});
+    boolean[] pending = passPending.computeIfAbsent(name, key -> new boolean[2]);
+    int slot = (int) (frame & 1);
+
+    // This slot was last used two frames ago; take its result if ready, otherwise drop it
+    if (pending[slot]) {
+      if (GL15.glGetQueryObjecti(queries[slot], GL15.GL_QUERY_RESULT_AVAILABLE) != GL11.GL_FALSE) {
+        Metrics.recordTime("gpu." + name, GL33.glGetQueryObjectui64(queries[slot], GL15.GL_QUERY_RESULT));
+      } else {
+        Metrics.increment("gpu.queryNotReady");
+      }
+      pending[slot] = false;
+    }
+
+    GL15.glBeginQuery(GL33.GL_TIME_ELAPSED, queries[slot]);
+    pending[slot] = true;
+    activePass = name;
+  }
+
+  public static void endPass() {
+    if (!ENABLED || activePass == null) return;
+    GL15.glEndQuery(GL33.GL_TIME_ELAPSED);
+    activePass = null;
+  }
+
+  /** Call after swapping buffers; publishes this frame's call counts. */
+  public static void endFrame() {
+    if (!ENABLED) return;
+    int total = 0;
+    for (int i = 0; i < frameCounts.length; i++) {
+      if (frameCounts[i] == 0) continue;
+      Metrics.add("gl." + CALL_NAMES[i], frameCounts[i]);
+      total += frameCounts[i];
+      frameCounts[i] = 0;
+    }
+    Metrics.setGauge("gl.callsPerFrame", total);
+    frame++;
+  }
+
+  /** Deletes the timer queries. Call from {@link Main}'s cleanup while the GL context is still current. */
+  public static void cleanup() {
+    if (!ENABLED) return;
+    for (int[] queries : passQueries.values()) {
+      GL15.glDeleteQueries(queries);
+    }
+    passQueries.clear();
+    passPending.clear();
+    activePass = null;
+  }
+
+  private static void count(int call) {
+    if (ENABLED) frameCounts[call]++;
+  }
+
+  public static void glClear(int mask) {
+    count(CLEAR);
+    GL11.glClear(mask);
+  }
+
+  public static void glUseProgram(int program) {
+    count(USE_PROGRAM);
+    GL20.glUseProgram(program);
+  }
+
+  public static int glGetInteger(int name) {
+    count(GET_INTEGER);
+    return GL11.glGetInteger(name);
+  }
+
+  public static int glGetUniformLocation(int program, CharSequence name) {
+    count(GET_UNIFORM_LOCATION);
+    return GL20.glGetUniformLocation(program, name);
+  }
+
+  public static void glUniformMatrix4fv(int location, boolean transpose, FloatBuffer value) {
+    count(UNIFORM_MATRIX);
+    GL20.glUniformMatrix4fv(location, transpose, value);
+  }
+
+  public static void glActiveTexture(int texture) {
+    count(ACTIVE_TEXTURE);
+    GL13.glActiveTexture(texture);
+  }
+
+  public static void glBindTexture(int target, int texture) {
+    count(BIND_TEXTURE);
+    GL11.glBindTexture(target, texture);
+  }
+
+  public static void glBindVertexArray(int array) {
+    count(BIND_VERTEX_ARRAY);
+    GL30.glBindVertexArray(array);
+  }
+
+  public static void glBindBuffer(int target, int buffer) {
+    count(BIND_BUFFER);
+    GL15.glBindBuffer(target, buffer);
+  }
+
+  public static void glBufferData(int target, IntBuffer data, int usage) {
+    count(BUFFER_DATA);
+    GL15.glBufferData(target, data, usage);
+  }
+
+  public static void glBufferData(int target, int[] data, int usage) {
+    count(BUFFER_DATA);
+    GL15.glBufferData(target, data, usage);
+  }
+
+  public static void glDrawElements(int mode, int elementCount, int type, long indices) {
+    count(DRAW_ELEMENTS);
+    GL11.glDrawElements(mode, elementCount, type, indices);
+  }
+}
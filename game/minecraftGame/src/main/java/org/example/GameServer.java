@@ -0,0 +1,496 @@
+package org.example;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dedicated, authoritative server. Runs a headless {@link World} and talks to clients over
+ * non-blocking NIO on a single thread; chunk generation stays on the world's loader pool.
+ *
+ * Every tick each client gets the chunks it is missing, nearest first, in
+ * {@link ChunkCodec} form and within its bandwidth budget, plus the block changes and player
+ * moves of that tick for the area it can see. Clients never receive whole chunks again
+ * after a block edit, only the deltas; a chunk changed by a bulk edit or a restored snapshot
+ * is sent again.
+ */
+public class GameServer implements Runnable {
+  public static final int DEFAULT_PORT = 25566;
+  public static final int TICKS_PER_SECOND = 20;
+  private static final long TICK_NANOS = 1_000_000_000L / TICKS_PER_SECOND;
+
+  // Per-client limits
+  private static final int MAX_VIEW_DISTANCE = 8;
+  private static final long BYTES_PER_SECOND = 512 * 1024;
+  private static final long BYTES_PER_TICK = BYTES_PER_SECOND / TICKS_PER_SECOND;
+  private static final long MAX_BACKLOG = 1024 * 1024;
+  private static final float MAX_MOVE_PER_MESSAGE = 2.0f;
+  private static final float REACH = 8.0f;
+
+  private static final int ENCODED_CACHE_LIMIT = 4096;
+
+  // Chunk offsets within MAX_VIEW_DISTANCE as dx, dz pairs, nearest first
+  private static final int[] OFFSETS = buildOffsets();
+
+  private final World world;
+  private final Selector selector;
+  private final ServerSocketChannel serverChannel;
+  private final List<ClientSession> sessions = new ArrayList<>();
+  private final Map<Long, byte[]> encodedChunks = new HashMap<>();
+  private final float spawnX, spawnY, spawnZ;
+
+  // Block changes applied this tick as x, y, z, type, in the order they happened
+  private int[] deltas = new int[64];
+  private int deltaCount = 0;
+
+  private volatile boolean running = true;
+  private int nextPlayerId = 1;
+  private long tickCount = 0;
+
+  public GameServer(World world, int port) throws IOException {
+    this.world = world;
+    // Client edits, block updates (flowing water, falling sand) and bulk edits all arrive here
+    world.setBlockChangeListener(new World.BlockChangeListener() {
+      @Override
+      public void blockChanged(int x, int y, int z, int type) {
+        GameServer.this.blockChanged(x, y, z, type);
+      }
+
+      @Override
+      public void chunkChanged(int chunkX, int chunkZ) {
+        GameServer.this.chunkChanged(chunkX, chunkZ);
+      }
+    });
+    this.selector = Selector.open();
+    this.serverChannel = ServerSocketChannel.open();
+    serverChannel.bind(new InetSocketAddress(port), 1024);
+    serverChannel.configureBlocking(false);
+    serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+    // The spawn chunks have to exist before the spawn height can be found
+    world.loadArea(0, 0, 1);
+    // Players are spread over the map, so entities are simulated in every loaded chunk
+    world.setSimulationDistance(World.UNLIMITED);
+    spawnX = 0.5f;
+    spawnZ = 0.5f;
+    spawnY = world.getSurfaceHeight(0, 0) + 2;
+  }
+
+  public int getPort() {
+    return serverChannel.socket().getLocalPort();
+  }
+
+  public void stop() {
+    running = false;
+    selector.wakeup();
+  }
+
+  @Override
+  public void run() {
+    long nextTick = System.nanoTime();
+    try {
+      while (running) {
+        long wait = Math.max(1, (nextTick - System.nanoTime()) / 1_000_000);
+        selector.select(wait);
+        handleSelectedKeys();
+
+        long now = System.nanoTime();
+        if (now >= nextTick) {
+          tick();
+          nextTick += TICK_NANOS;
+          // Don't try to catch up after a long stall
+          if (now - nextTick > TICK_NANOS * TICKS_PER_SECOND) {
+            nextTick = now;
+          }
+        }
+        Metrics.reportIfDue();
+      }
+    } catch (IOException e) {
+      System.err.println("Server stopped: " + e.getMessage());
+    } finally {
+      for (ClientSession session : new ArrayList<>(sessions)) {
+        disconnect(session);
+      }
+      try {
+        serverChannel.close();
+        selector.close();
+      } catch (IOException e) {
+        System.err.println("Error closing server: " + e.getMessage());
+      }
+    }
+  }
+
+  private void handleSelectedKeys() throws IOException {
+    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+    while (keys.hasNext()) {
+      SelectionKey key = keys.next();
+      keys.remove();
+      if (!key.isValid()) continue;
+
+      if (key.isAcceptable()) {
+        accept();
+        continue;
+      }
+      ClientSession session = (ClientSession) key.attachment();
+      try {
+        if (key.isReadable()) {
+          read(session);
+        }
+        if (key.isValid() && key.isWritable() && session.flush()) {
+          key.interestOps(SelectionKey.OP_READ);
+        }
+      } catch (IOException | RuntimeException e) {
+        System.err.println("Dropping player " + session.playerId + ": " + e.getMessage());
+        disconnect(session);
+      }
+    }
+  }
+
+  private void accept() throws IOException {
+    SocketChannel channel;
+    while ((channel = serverChannel.accept()) != null) {
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(true);
+      ClientSession session = new ClientSession(nextPlayerId++, channel);
+      channel.register(selector, SelectionKey.OP_READ, session);
+      sessions.add(session);
+    }
+  }
+
+  private void read(ClientSession session) throws IOException {
+    if (session.channel.read(session.inbound) < 0) {
+      disconnect(session);
+      return;
+    }
+    session.inbound.flip();
+    ByteBuffer frame;
+    while ((frame = Protocol.nextFrame(session.inbound)) != null) {
+      handle(session, frame);
+    }
+    session.inbound.compact();
+    if (!session.inbound.hasRemaining()) {
+      throw new IllegalStateException("Message too large");
+    }
+  }
+
+  private void handle(ClientSession session, ByteBuffer frame) {
+    byte type = frame.get();
+    switch (type) {
+      case Protocol.HELLO:
+        session.viewDistance = Math.max(1, Math.min(MAX_VIEW_DISTANCE, frame.getInt()));
+        session.x = spawnX;
+        session.y = spawnY;
+        session.z = spawnZ;
+        session.welcomed = true;
+        session.moved = true;
+        ByteBuffer welcome = Protocol.frame(Protocol.WELCOME, 2 * Integer.BYTES + 3 * Float.BYTES);
+        welcome.putInt(session.playerId).putInt(session.viewDistance)
+            .putFloat(session.x).putFloat(session.y).putFloat(session.z).flip();
+        session.send(welcome);
+        break;
+      case Protocol.MOVE:
+        if (session.welcomed) {
+          move(session, frame.getFloat(), frame.getFloat(), frame.getFloat());
+        }
+        break;
+      case Protocol.SET_BLOCK:
+        if (session.welcomed) {
+          setBlock(session, frame.getInt(), frame.getInt(), frame.getInt(), frame.getShort());
+        }
+        break;
+      default:
+        throw new IllegalStateException("Unknown message type " + type);
+    }
+  }
+
+  // The server owns positions: a client can only move a bounded distance per message
+  private void move(ClientSession session, float x, float y, float z) {
+    // NaN would poison the session position for good, so treat it like any other bad message
+    if (!Float.isFinite(x) || !Float.isFinite(y) || !Float.isFinite(z)) {
+      throw new IllegalStateException("Non-finite position " + x + ", " + y + ", " + z);
+    }
+    float dx = x - session.x;
+    float dy = y - session.y;
+    float dz = z - session.z;
+    float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    if (!(distance <= MAX_MOVE_PER_MESSAGE)) {
+      float scale = Float.isFinite(distance) ? MAX_MOVE_PER_MESSAGE / distance : 0;
+      dx *= scale;
+      dy *= scale;
+      dz *= scale;
+    }
+    session.x += dx;
+    session.y = Math.max(-64, Math.min(World.WORLD_HEIGHT + 64, session.y + dy));
+    session.z += dz;
+    session.moved = true;
+  }
+
+  private void setBlock(ClientSession session, int x, int y, int z, int type) {
+    if (type < 0 || type >= BlockRegistry.size()) return;
+    float dx = x + 0.5f - session.x;
+    float dy = y + 0.5f - session.y;
+    float dz = z + 0.5f - session.z;
+    if (dx * dx + dy * dy + dz * dz > REACH * REACH) return;
+    world.setBlock(x, y, z, type);
+  }
+
+  // Runs on the server thread, from setBlock and from world.tick()
+  private void blockChanged(int x, int y, int z, int type) {
+    encodedChunks.remove(ChunkPos.asLong(x >> 4, z >> 4));
+    if (deltaCount * 4 + 4 > deltas.length) {
+      deltas = Arrays.copyOf(deltas, deltas.length * 2);
+    }
+    deltas[deltaCount * 4] = x;
+    deltas[deltaCount * 4 + 1] = y;
+    deltas[deltaCount * 4 + 2] = z;
+    deltas[deltaCount * 4 + 3] = type;
+    deltaCount++;
+  }
+
+  // Runs on the server thread. Clients holding the chunk get it again instead of deltas
+  private void chunkChanged(int chunkX, int chunkZ) {
+    long key = ChunkPos.asLong(chunkX, chunkZ);
+    encodedChunks.remove(key);
+    // Older deltas would be sent after the new copy and undo it
+    int kept = 0;
+    for (int i = 0; i < deltaCount; i++) {
+      if (deltas[i * 4] >> 4 == chunkX && deltas[i * 4 + 2] >> 4 == chunkZ) continue;
+      System.arraycopy(deltas, i * 4, deltas, kept * 4, 4);
+      kept++;
+    }
+    deltaCount = kept;
+    for (ClientSession session : sessions) {
+      if (!session.sentChunks.contains(key)) continue;
+      int dx = chunkX - session.centreChunkX;
+      int dz = chunkZ - session.centreChunkZ;
+      if (dx * dx + dz * dz <= session.viewDistance * session.viewDistance) {
+        session.staleChunks.add(key);
+      } else {
+        // In the slack ring streamChunks never resends, so take it away instead
+        session.sentChunks.remove(key);
+        ByteBuffer unload = Protocol.frame(Protocol.UNLOAD_CHUNK, 2 * Integer.BYTES);
+        unload.putInt(chunkX).putInt(chunkZ).flip();
+        session.send(unload);
+      }
+    }
+  }
+
+  private void tick() {
+    long start = System.nanoTime();
+    world.tick(1.0f / TICKS_PER_SECOND);
+    int welcomed = 0;
+    for (ClientSession session : sessions) {
+      if (!session.welcomed) continue;
+      welcomed++;
+      streamChunks(session);
+    }
+    sendDeltas();
+    sendPositions();
+    if (++tickCount % TICKS_PER_SECOND == 0) {
+      unloadUnwatchedChunks();
+    }
+
+    for (ClientSession session : new ArrayList<>(sessions)) {
+      try {
+        if (!session.flush()) {
+          session.channel.keyFor(selector).interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+      } catch (IOException e) {
+        disconnect(session);
+      }
+    }
+
+    Metrics.recordTime("server.tick", System.nanoTime() - start);
+    Metrics.setGauge("server.players", welcomed);
+  }
+
+  // Without this every chunk any player ever walked through would stay in memory
+  private void unloadUnwatchedChunks() {
+    world.unloadChunks(key -> {
+      int x = ChunkPos.getX(key);
+      int z = ChunkPos.getZ(key);
+      for (ClientSession session : sessions) {
+        if (!session.welcomed) continue;
+        // Same slack as the client unload in streamChunks, plus one so requested chunks survive
+        int keep = session.viewDistance + 2;
+        int centreX = (int) Math.floor(session.x) >> 4;
+        int centreZ = (int) Math.floor(session.z) >> 4;
+        if (Math.abs(x - centreX) <= keep && Math.abs(z - centreZ) <= keep) return true;
+      }
+      return false;
+    });
+  }
+
+  private void streamChunks(ClientSession session) {
+    int centreX = (int) Math.floor(session.x) >> 4;
+    int centreZ = (int) Math.floor(session.z) >> 4;
+    int radius = session.viewDistance;
+
+    if (centreX != session.centreChunkX || centreZ != session.centreChunkZ) {
+      session.centreChunkX = centreX;
+      session.centreChunkZ = centreZ;
+      // One chunk of slack so walking along a border doesn't resend chunks
+      Iterator<Long> sent = session.sentChunks.iterator();
+      while (sent.hasNext()) {
+        long key = sent.next();
+        int x = ChunkPos.getX(key);
+        int z = ChunkPos.getZ(key);
+        if (Math.abs(x - centreX) > radius + 1 || Math.abs(z - centreZ) > radius + 1) {
+          sent.remove();
+          session.staleChunks.remove(key);
+          ByteBuffer unload = Protocol.frame(Protocol.UNLOAD_CHUNK, 2 * Integer.BYTES);
+          unload.putInt(x).putInt(z).flip();
+          session.send(unload);
+        }
+      }
+    }
+
+    session.bandwidthTokens = Math.min(BYTES_PER_SECOND, session.bandwidthTokens + BYTES_PER_TICK);
+    if (session.queuedBytes > MAX_BACKLOG) return;
+
+    for (int i = 0; i < OFFSETS.length && session.bandwidthTokens > 0; i += 2) {
+      int dx = OFFSETS[i];
+      int dz = OFFSETS[i + 1];
+      if (dx * dx + dz * dz > radius * radius) break;
+
+      int x = centreX + dx;
+      int z = centreZ + dz;
+      long key = ChunkPos.asLong(x, z);
+      if (session.sentChunks.contains(key) && !session.staleChunks.contains(key)) continue;
+
+      Chunk chunk = world.getChunk(x, z);
+      if (chunk == null) {
+        world.requestChunk(x, z);
+        continue;
+      }
+
+      byte[] data = encodedChunks.get(key);
+      if (data == null) {
+        if (encodedChunks.size() >= ENCODED_CACHE_LIMIT) {
+          encodedChunks.clear();
+        }
+        data = ChunkCodec.encode(chunk);
+        encodedChunks.put(key, data);
+      }
+      ByteBuffer frame = Protocol.frame(Protocol.CHUNK, data.length);
+      frame.put(data).flip();
+      session.bandwidthTokens -= frame.remaining();
+      session.send(frame);
+      session.sentChunks.add(key);
+      session.staleChunks.remove(key);
+      Metrics.increment("server.chunksSent");
+    }
+  }
+
+  private void sendDeltas() {
+    if (deltaCount == 0) return;
+    for (ClientSession session : sessions) {
+      if (!session.welcomed) continue;
+
+      int visible = 0;
+      for (int i = 0; i < deltaCount; i++) {
+        if (session.sentChunks.contains(ChunkPos.asLong(deltas[i * 4] >> 4, deltas[i * 4 + 2] >> 4))) visible++;
+      }
+      if (visible == 0) continue;
+
+      ByteBuffer frame = Protocol.frame(Protocol.BLOCK_DELTAS, Integer.BYTES + visible * Protocol.BLOCK_DELTA_BYTES);
+      frame.putInt(visible);
+      for (int i = 0; i < deltaCount; i++) {
+        int x = deltas[i * 4];
+        int z = deltas[i * 4 + 2];
+        if (!session.sentChunks.contains(ChunkPos.asLong(x >> 4, z >> 4))) continue;
+        frame.putInt(x).putInt(deltas[i * 4 + 1]).putInt(z).putShort((short) deltas[i * 4 + 3]);
+      }
+      session.send(frame.flip());
+    }
+    Metrics.add("server.blockDeltas", deltaCount);
+    deltaCount = 0;
+  }
+
+  private void sendPositions() {
+    List<ClientSession> moved = new ArrayList<>();
+    for (ClientSession session : sessions) {
+      if (session.welcomed && session.moved) moved.add(session);
+    }
+    if (moved.isEmpty()) return;
+
+    List<ClientSession> visible = new ArrayList<>();
+    for (ClientSession session : sessions) {
+      if (!session.welcomed) continue;
+      float range = session.viewDistance * World.CHUNK_SIZE;
+      visible.clear();
+      for (ClientSession other : moved) {
+        if (other == session) continue;
+        float dx = other.x - session.x;
+        float dz = other.z - session.z;
+        if (dx * dx + dz * dz <= range * range) visible.add(other);
+      }
+      if (visible.isEmpty()) continue;
+
+      ByteBuffer frame = Protocol.frame(Protocol.PLAYER_POSITIONS, Integer.BYTES + visible.size() * Protocol.PLAYER_POSITION_BYTES);
+      frame.putInt(visible.size());
+      for (ClientSession other : visible) {
+        frame.putInt(other.playerId).putFloat(other.x).putFloat(other.y).putFloat(other.z);
+      }
+      session.send(frame.flip());
+    }
+
+    for (ClientSession session : moved) {
+      session.moved = false;
+    }
+  }
+
+  private void disconnect(ClientSession session) {
+    if (!sessions.remove(session)) return;
+    try {
+      session.channel.close();
+    } catch (IOException e) {
+      System.err.println("Error closing connection: " + e.getMessage());
+    }
+    if (!session.welcomed) return;
+
+    for (ClientSession other : sessions) {
+      if (!other.welcomed) continue;
+      ByteBuffer left = Protocol.frame(Protocol.PLAYER_LEFT, Integer.BYTES);
+      left.putInt(session.playerId).flip();
+      other.send(left);
+    }
+  }
+
+  private static int[] buildOffsets() {
+    List<int[]> offsets = new ArrayList<>();
+    for (int dx = -MAX_VIEW_DISTANCE; dx <= MAX_VIEW_DISTANCE; dx++) {
+      for (int dz = -MAX_VIEW_DISTANCE; dz <= MAX_VIEW_DISTANCE; dz++) {
+        offsets.add(new int[] {dx, dz});
+      }
+    }
+    offsets.sort((a, b) -> Integer.compare(a[0] * a[0] + a[1] * a[1], b[0] * b[0] + b[1] * b[1]));
+
+    int[] flat = new int[offsets.size() * 2];
+    for (int i = 0; i < offsets.size(); i++) {
+      flat[i * 2] = offsets.get(i)[0];
+      flat[i * 2 + 1] = offsets.get(i)[1];
+    }
+    return flat;
+  }
+
+  public static void main(String[] args) throws IOException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+    World world = new World(Runtime.getRuntime().availableProcessors());
+    GameServer server = new GameServer(world, port);
+    Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+    System.out.println("Server listening on port " + server.getPort());
+    server.run();
+    world.cleanup();
+  }
+}
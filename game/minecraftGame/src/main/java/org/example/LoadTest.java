@@ -0,0 +1,233 @@
+package org.example;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Loopback load test: hundreds of simulated players on one selector against a
+ * {@link GameServer}, each walking around and occasionally editing blocks.
+ *
+ * Usage: LoadTest [clients] [seconds] [host:port]. Without an address a server is started
+ * in this process on a free port. Throughput is printed through {@link Metrics}.
+ */
+public class LoadTest {
+  private static final int VIEW_DISTANCE = 4;
+  private static final float WALK_PER_TICK = 0.2f;
+  private static final double EDIT_CHANCE = 0.01;
+
+  private static class Bot {
+    final SocketChannel channel;
+    ByteBuffer inbound = ByteBuffer.allocate(64 * 1024);
+    final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+    boolean welcomed = false;
+    float x, y, z;
+    double heading;
+
+    Bot(SocketChannel channel, double heading) {
+      this.channel = channel;
+      this.heading = heading;
+    }
+  }
+
+  private final Selector selector;
+  private final List<Bot> bots = new ArrayList<>();
+  private final Random random = new Random(42);
+  private long chunksReceived = 0;
+  private long bytesReceived = 0;
+
+  private LoadTest() throws IOException {
+    selector = Selector.open();
+  }
+
+  private void connect(InetSocketAddress address, int clients) throws IOException {
+    for (int i = 0; i < clients; i++) {
+      SocketChannel channel = SocketChannel.open();
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(true);
+      Bot bot = new Bot(channel, random.nextDouble() * Math.PI * 2);
+      channel.connect(address);
+      channel.register(selector, SelectionKey.OP_CONNECT, bot);
+      bots.add(bot);
+    }
+  }
+
+  private void run(long durationNanos) throws IOException {
+    long end = System.nanoTime() + durationNanos;
+    long tickNanos = 1_000_000_000L / GameServer.TICKS_PER_SECOND;
+    long nextTick = System.nanoTime();
+
+    while (System.nanoTime() < end) {
+      selector.select(Math.max(1, (nextTick - System.nanoTime()) / 1_000_000));
+      Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+      while (keys.hasNext()) {
+        SelectionKey key = keys.next();
+        keys.remove();
+        if (!key.isValid()) continue;
+        Bot bot = (Bot) key.attachment();
+        if (key.isConnectable() && bot.channel.finishConnect()) {
+          key.interestOps(SelectionKey.OP_READ);
+          ByteBuffer hello = Protocol.frame(Protocol.HELLO, Integer.BYTES);
+          hello.putInt(VIEW_DISTANCE).flip();
+          send(bot, hello);
+        }
+        if (key.isValid() && key.isReadable()) {
+          read(bot, key);
+        }
+        if (key.isValid() && key.isWritable() && flush(bot)) {
+          key.interestOps(SelectionKey.OP_READ);
+        }
+      }
+
+      if (System.nanoTime() >= nextTick) {
+        nextTick += tickNanos;
+        tick();
+      }
+      Metrics.reportIfDue();
+    }
+  }
+
+  private void tick() throws IOException {
+    for (Bot bot : bots) {
+      if (!bot.welcomed) continue;
+
+      // Random walk around the spawn
+      bot.heading += (random.nextDouble() - 0.5) * 0.3;
+      bot.x += (float) Math.cos(bot.heading) * WALK_PER_TICK;
+      bot.z += (float) Math.sin(bot.heading) * WALK_PER_TICK;
+      ByteBuffer move = Protocol.frame(Protocol.MOVE, 3 * Float.BYTES);
+      move.putFloat(bot.x).putFloat(bot.y).putFloat(bot.z).flip();
+      send(bot, move);
+
+      if (random.nextDouble() < EDIT_CHANCE) {
+        int type = random.nextBoolean() ? BlockRegistry.AIR : BlockRegistry.STONE;
+        ByteBuffer edit = Protocol.frame(Protocol.SET_BLOCK, 3 * Integer.BYTES + Short.BYTES);
+        edit.putInt((int) Math.floor(bot.x) + random.nextInt(5) - 2)
+            .putInt((int) Math.floor(bot.y) - 2 - random.nextInt(2))
+            .putInt((int) Math.floor(bot.z) + random.nextInt(5) - 2)
+            .putShort((short) type).flip();
+        send(bot, edit);
+      }
+    }
+
+    for (Bot bot : bots) {
+      if (bot.channel.isConnected() && !flush(bot)) {
+        bot.channel.keyFor(selector).interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+      }
+    }
+  }
+
+  private void read(Bot bot, SelectionKey key) throws IOException {
+    int read = bot.channel.read(bot.inbound);
+    if (read < 0) {
+      System.err.println("Server closed a connection");
+      key.cancel();
+      bot.channel.close();
+      return;
+    }
+    bytesReceived += read;
+    Metrics.add("loadtest.bytesIn", read);
+
+    bot.inbound.flip();
+    ByteBuffer frame;
+    while ((frame = Protocol.nextFrame(bot.inbound)) != null) {
+      byte type = frame.get();
+      switch (type) {
+        case Protocol.WELCOME:
+          frame.getInt();
+          frame.getInt();
+          bot.x = frame.getFloat();
+          bot.y = frame.getFloat();
+          bot.z = frame.getFloat();
+          bot.welcomed = true;
+          break;
+        case Protocol.CHUNK:
+          // Decode like a real client would, which also checks the encoding
+          ChunkCodec.decode(frame);
+          chunksReceived++;
+          Metrics.increment("loadtest.chunks");
+          break;
+        case Protocol.BLOCK_DELTAS:
+          Metrics.add("loadtest.blockDeltas", frame.getInt());
+          break;
+        case Protocol.PLAYER_POSITIONS:
+          Metrics.add("loadtest.playerPositions", frame.getInt());
+          break;
+        default:
+          break;
+      }
+    }
+    bot.inbound.compact();
+    if (!bot.inbound.hasRemaining()) {
+      // A frame larger than the buffer, grow it rather than giving every bot a huge buffer up front
+      ByteBuffer larger = ByteBuffer.allocate(bot.inbound.capacity() * 2);
+      larger.put(bot.inbound.flip());
+      bot.inbound = larger;
+    }
+  }
+
+  private void send(Bot bot, ByteBuffer frame) {
+    bot.outbound.add(frame);
+  }
+
+  private boolean flush(Bot bot) throws IOException {
+    while (!bot.outbound.isEmpty()) {
+      ByteBuffer head = bot.outbound.peek();
+      bot.channel.write(head);
+      if (head.hasRemaining()) return false;
+      bot.outbound.poll();
+    }
+    return true;
+  }
+
+  private void close() throws IOException {
+    for (Bot bot : bots) {
+      bot.channel.close();
+    }
+    selector.close();
+  }
+
+  public static void main(String[] args) throws Exception {
+    int clients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+
+    World world = null;
+    GameServer server = null;
+    InetSocketAddress address;
+    if (args.length > 2) {
+      String[] parts = args[2].split(":");
+      address = new InetSocketAddress(parts[0], Integer.parseInt(parts[1]));
+    } else {
+      world = new World(Runtime.getRuntime().availableProcessors());
+      server = new GameServer(world, 0);
+      Thread serverThread = new Thread(server, "server");
+      serverThread.start();
+      address = new InetSocketAddress("127.0.0.1", server.getPort());
+    }
+
+    LoadTest test = new LoadTest();
+    test.connect(address, clients);
+    long start = System.nanoTime();
+    test.run(seconds * 1_000_000_000L);
+    double elapsed = (System.nanoTime() - start) / 1e9;
+
+    long welcomed = test.bots.stream().filter(bot -> bot.welcomed).count();
+    System.out.printf("%d/%d clients joined, %d chunks and %.1f MB received in %.1fs (%.1f MB/s)%n",
+        welcomed, clients, test.chunksReceived, test.bytesReceived / 1e6, elapsed,
+        test.bytesReceived / 1e6 / elapsed);
+
+    test.close();
+    if (server != null) {
+      server.stop();
+      world.cleanup();
+    }
+  }
+}
@@ -1,23 +1,34 @@
 package org.example;
 
 import org.joml.Matrix4f;
-import org.joml.Vector3f;
 import org.lwjgl.glfw.*;
 import org.lwjgl.opengl.*;
 import org.lwjgl.system.*;
 
 import java.nio.*;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
 
 import static org.lwjgl.glfw.Callbacks.*;
 import static org.lwjgl.glfw.GLFW.*;
 import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL13.*;
 import static org.lwjgl.opengl.GL15.*;
 import static org.lwjgl.opengl.GL20.*;
 import static org.lwjgl.opengl.GL30.*;
 import static org.lwjgl.system.MemoryStack.*;
 import static org.lwjgl.system.MemoryUtil.*;
+import static org.example.GLProfiler.glActiveTexture;
+import static org.example.GLProfiler.glBindTexture;
+import static org.example.GLProfiler.glClear;
+import static org.example.GLProfiler.glGetUniformLocation;
+import static org.example.GLProfiler.glUniformMatrix4fv;
+import static org.example.GLProfiler.glUseProgram;
 
 public class Main {
+  // Fallback for reportStartup when the OS does not report the process start time
+  private static final long STARTED_MILLIS = System.currentTimeMillis();
+
   private long window;
   private int width = 800;
   private int height = 600;
@@ -25,6 +36,7 @@ public class Main {
   private int vaoId;
   private int vboId;
   private int shaderProgram;
+  private int blockTexture;
 
   private Camera camera;
   private World world;
@@ -35,14 +47,9 @@ public class Main {
       physics.cleanup();
     }
 
+    GLProfiler.cleanup();
+    glDeleteTextures(blockTexture);
     glDeleteProgram(shaderProgram);
-    glfwDestroyWindow(window);
-    glfwTerminate();
-  }
-
-  public void run() {
-    init();
-    loop();
 
     // Free the window callbacks and destroy the window
     glfwFreeCallbacks(window);
@@ -53,9 +60,20 @@ public class Main {
     glfwSetErrorCallback(null).free();
   }
 
+  public void run() {
+    init();
+    try {
+      loop();
+    } finally {
+      cleanup();
+    }
+  }
+
   private void init() {
     // Setup an error callback
     GLFWErrorCallback.createPrint(System.err).set();
+    // Decode block textures and generate the spawn area on worker threads while the window and context come up
+    CompletableFuture<ByteBuffer> texturePixels = BlockTextures.loadAsync();
     physics = new Physics();
     world = physics.getWorld();
     // Initialize GLFW
@@ -109,6 +127,8 @@ public class Main {
     // OpenGL context, or any context that is managed externally.
     GL.createCapabilities();
 
+    GLProfiler.init();
+
     // Set the clear color
     glClearColor(0.5f, 0.7f, 1.0f, 0.0f);
     glEnable(GL_DEPTH_TEST);
@@ -118,6 +138,7 @@ public class Main {
 
     // Setup shaders
     setupShaders();
+    blockTexture = BlockTextures.upload(texturePixels.join());
   }
 
   private void setupShaders() {
@@ -125,16 +146,28 @@ public class Main {
     int vertexShader = glCreateShader(GL_VERTEX_SHADER);
     glShaderSource(vertexShader,
         "#version 330 core\n" +
-            "layout (location = 0) in vec3 aPos;\n" +
-            "layout (location = 1) in vec3 aColor;\n" +
-            "out vec3 ourColor;\n" +
+            "layout (location = 0) in uvec2 aVertex;\n" +
+            "out vec3 texCoord;\n" +
+            "out float shade;\n" +
             "uniform mat4 projection;\n" +
             "uniform mat4 view;\n" +
             "uniform mat4 model;\n" +
+            "const float aoLevels[4] = float[](0.45, 0.65, 0.82, 1.0);\n" +
             "void main()\n" +
             "{\n" +
-            "   gl_Position = projection * view * model * vec4(aPos, 1.0);\n" +
-            "   ourColor = aColor;\n" +
+            "   // Unpack VertexFormat: position, face and AO in x, texture layer and light in y\n" +
+            "   vec3 pos = vec3(aVertex.x & 31u, (aVertex.x >> 10) & 511u, (aVertex.x >> 5) & 31u);\n" +
+            "   uint face = (aVertex.x >> 19) & 7u;\n" +
+            "   uint ao = (aVertex.x >> 22) & 3u;\n" +
+            "   uint layer = aVertex.y & 4095u;\n" +
+            "   float sky = float((aVertex.y >> 12) & 15u);\n" +
+            "   float block = float((aVertex.y >> 16) & 15u);\n" +
+            "   gl_Position = projection * view * model * vec4(pos, 1.0);\n" +
+            "   // Texture coordinates come from the two axes the face spans and repeat per block\n" +
+            "   uint axis = face >> 1;\n" +
+            "   vec2 uv = axis == 0u ? vec2(pos.z, -pos.y) : axis == 1u ? pos.xz : vec2(pos.x, -pos.y);\n" +
+            "   texCoord = vec3(uv, float(layer));\n" +
+            "   shade = aoLevels[ao] * max(sky, block) / 15.0;\n" +
             "}\n"
     );
     glCompileShader(vertexShader);
@@ -143,11 +176,13 @@ public class Main {
     int fragmentShader = glCreateShader(GL_FRAGMENT_SHADER);
     glShaderSource(fragmentShader,
         "#version 330 core\n" +
-            "in vec3 ourColor;\n" +
+            "in vec3 texCoord;\n" +
+            "in float shade;\n" +
             "out vec4 FragColor;\n" +
+            "uniform sampler2DArray blockTextures;\n" +
             "void main()\n" +
             "{\n" +
-            "   FragColor = vec4(ourColor, 1.0);\n" +
+            "   FragColor = vec4(texture(blockTextures, texCoord).rgb * shade, 1.0);\n" +
             "}\n"
     );
     glCompileShader(fragmentShader);
@@ -161,19 +196,27 @@ public class Main {
     // Delete the shaders as they're linked into our program now and no longer necessary
     glDeleteShader(vertexShader);
     glDeleteShader(fragmentShader);
+
+    // Block textures are always bound to unit 0
+    glUseProgram(shaderProgram);
+    glUniform1i(glGetUniformLocation(shaderProgram, "blockTextures"), 0);
   }
 
   private void loop() {
     // Initialize input handler
     Input input = new Input(window, camera, physics);
+    ViewDistanceController viewDistance = new ViewDistanceController(world);
 
     // Set up timing
     double lastTime = glfwGetTime();
     double deltaTime;
+    boolean firstFrame = true;
+    boolean playable = false;
 
     // Run the rendering loop until the user has attempted to close the window
     while (!glfwWindowShouldClose(window)) {
       // Calculate delta time
+      long frameStart = System.nanoTime();
       double currentTime = glfwGetTime();
       deltaTime = currentTime - lastTime;
       lastTime = currentTime;
@@ -216,15 +259,46 @@ public class Main {
         glUniformMatrix4fv(modelLoc, false, modelBuffer);
       }
 
-      // Render the world
+      // Render the world, every chunk samples the same texture array
+      glActiveTexture(GL_TEXTURE0);
+      glBindTexture(GL_TEXTURE_2D_ARRAY, blockTexture);
+      GLProfiler.beginPass("world");
       world.render(camera.getPosition());
+      GLProfiler.endPass();
+
+      Metrics.reportIfDue();
+      // Work done this frame, without the v-sync wait in the swap
+      viewDistance.recordFrame(System.nanoTime() - frameStart);
 
       // Swap buffers and poll for window events
       glfwSwapBuffers(window);
       glfwPollEvents();
+      GLProfiler.endFrame();
+
+      if (firstFrame) {
+        firstFrame = false;
+        reportStartup("first frame", "startup.firstFrameMs");
+      }
+      if (!playable && !physics.isPlayerHeld()) {
+        playable = true;
+        reportStartup("playable", "startup.playableMs");
+        // The CDS training run in pom.xml only needs to get this far
+        if (Boolean.getBoolean("game.exitWhenPlayable")) {
+          glfwSetWindowShouldClose(window, true);
+        }
+      }
     }
   }
 
+  // Measured from JVM start so class loading and JIT warm-up are included
+  private static void reportStartup(String milestone, String gauge) {
+    long started = ProcessHandle.current().info().startInstant()
+        .map(Instant::toEpochMilli).orElse(STARTED_MILLIS);
+    long elapsed = System.currentTimeMillis() - started;
+    System.out.println("Time to " + milestone + ": " + elapsed + " ms");
+    Metrics.setGauge(gauge, elapsed);
+  }
+
   public static void main(String[] args) {
     new Main().run();
   }
@@ -0,0 +1,81 @@
+package org.example;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide timers, counters and gauges. Any thread may record; the main loop
+ * prints a summary every few seconds and resets the timers and counters.
+ */
+public class Metrics {
+  private static final long REPORT_INTERVAL_NANOS = 5_000_000_000L;
+
+  private static final Map<String, Timer> timers = new ConcurrentHashMap<>();
+  private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+  private static final Map<String, Double> gauges = new ConcurrentHashMap<>();
+  private static long lastReport = System.nanoTime();
+
+  private static class Timer {
+    final LongAdder count = new LongAdder();
+    final LongAdder total = new LongAdder();
+    final LongAccumulator max = new LongAccumulator(Math::max, 0);
+  }
+
+  private Metrics() {
+  }
+
+  public static void recordTime(String name, long nanos) {
+    Timer timer = timers.computeIfAbsent(name, k -> new Timer());
+    timer.count.increment();
+    timer.total.add(nanos);
+    timer.max.accumulate(nanos);
+  }
+
+  public static void increment(String name) {
+    add(name, 1);
+  }
+
+  public static void add(String name, long delta) {
+    counters.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+  }
+
+  public static void setGauge(String name, double value) {
+    gauges.put(name, value);
+  }
+
+  public static void reportIfDue() {
+    long now = System.nanoTime();
+    if (now - lastReport < REPORT_INTERVAL_NANOS) return;
+    double seconds = (now - lastReport) / 1e9;
+    lastReport = now;
+    System.out.print(report(seconds));
+  }
+
+  // Builds the summary and resets timers and counters for the next interval
+  private static String report(double seconds) {
+    StringBuilder sb = new StringBuilder("--- metrics (").append(String.format("%.1f", seconds)).append("s) ---\n");
+
+    for (Map.Entry<String, Timer> entry : new TreeMap<>(timers).entrySet()) {
+      Timer timer = entry.getValue();
+      long count = timer.count.sumThenReset();
+      long total = timer.total.sumThenReset();
+      long max = timer.max.getThenReset();
+      if (count == 0) continue;
+      sb.append(String.format("%-28s n=%-8d avg=%.3fms max=%.3fms%n",
+          entry.getKey(), count, total / 1e6 / count, max / 1e6));
+    }
+
+    for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+      long value = entry.getValue().sumThenReset();
+      sb.append(String.format("%-28s %d (%.1f/s)%n", entry.getKey(), value, value / seconds));
+    }
+
+    for (Map.Entry<String, Double> entry : new TreeMap<>(gauges).entrySet()) {
+      sb.append(String.format("%-28s %.2f%n", entry.getKey(), entry.getValue()));
+    }
+    return sb.toString();
+  }
+}
@@ -8,9 +8,13 @@ public class Physics {
   private static final float JUMP_FORCE = 8.0f;
   private static final float PLAYER_HEIGHT = 1.8f;
   private static final float PLAYER_WIDTH = 0.6f;
+  private static final float TICK_SECONDS = 1.0f / 20;
 
   private final World world;
   private final Vector3f tempVec = new Vector3f();
+  private float tickAccumulator = 0;
+  private final Vector3f heldPosition = new Vector3f();
+  private boolean held = false;
 
   public Physics() {
     this.world = new World();
@@ -32,6 +36,25 @@ public class Physics {
     // Update chunks based on player position
     world.updateChunks(position);
 
+    // Hold the player in place until the ground under them has loaded, instead of falling through it
+    if (world.getChunk((int) Math.floor(position.x) >> 4, (int) Math.floor(position.z) >> 4) == null) {
+      if (!held) {
+        held = true;
+        heldPosition.set(position);
+      }
+      position.set(heldPosition);
+      velocity.set(0, 0, 0);
+      return;
+    }
+    held = false;
+
+    // The world simulates at a fixed rate, independent of the frame rate
+    tickAccumulator += deltaTime;
+    while (tickAccumulator >= TICK_SECONDS) {
+      world.tick(TICK_SECONDS);
+      tickAccumulator -= TICK_SECONDS;
+    }
+
     // Apply gravity if not on ground
     if (!isOnGround(camera)) {
       velocity.y -= GRAVITY * deltaTime;
@@ -73,6 +96,11 @@ public class Physics {
     }
   }
 
+  /** True while the player is waiting for the chunk they stand in to load. */
+  public boolean isPlayerHeld() {
+    return held;
+  }
+
   public void jump(Camera camera) {
     if (isOnGround(camera)) {
       camera.getVelocity().y = JUMP_FORCE;
@@ -86,19 +114,13 @@ public class Physics {
   }
 
   private boolean checkPlayerCollision(Vector3f position) {
-    float playerHalfWidth = PLAYER_WIDTH / 2;
-
-    // Check collision at feet level and head level
-    for (float offsetY : new float[]{0.1f, PLAYER_HEIGHT - 0.1f}) {
-      for (float offsetX : new float[]{-playerHalfWidth, playerHalfWidth}) {
-        for (float offsetZ : new float[]{-playerHalfWidth, playerHalfWidth}) {
-          if (checkCollision(position.x + offsetX, position.y + offsetY, position.z + offsetZ)) {
-            return true;
-          }
-        }
-      }
+    try {
+      return world.isBoxBlocked(position.x, position.y, position.z, PLAYER_WIDTH / 2, PLAYER_HEIGHT);
+    } catch (Exception e) {
+      // Gracefully handle any errors
+      System.err.println("Error checking collision: " + e.getMessage());
+      return false;
     }
-    return false;
   }
 
   private boolean checkCollision(float x, float y, float z) {
@@ -0,0 +1,129 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates every chunk within a square radius of a centre chunk and saves it to
+ * {@link RegionStorage}, so the game loads that area from disk instead of generating it.
+ *
+ * Usage: Pregenerator radius [centreX centreZ] [directory]. Chunks are generated on every
+ * core, nearest the centre first. At most a few chunks per thread are in memory at once;
+ * each is dropped as soon as it is written. Chunks already on disk are skipped, so an
+ * interrupted run picks up where it stopped when started again with the same arguments.
+ * The terrain kind comes from -Dgame.terrain like in the game, and a directory already
+ * generated with another kind is refused rather than mixed.
+ */
+public class Pregenerator {
+  private static final long PROGRESS_INTERVAL_NANOS = 2_000_000_000L;
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("Usage: Pregenerator radius [centreX centreZ] [directory]");
+      System.exit(1);
+    }
+    int radius = Integer.parseInt(args[0]);
+    int centreX = args.length > 2 ? Integer.parseInt(args[1]) : 0;
+    int centreZ = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+    Path directory = args.length > 3 ? Paths.get(args[3]) : World.WORLD_DIRECTORY;
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    RegionStorage storage;
+    try {
+      storage = new RegionStorage(directory, DensityField.terrainOption());
+    } catch (IOException e) {
+      System.err.println("Cannot pregenerate: " + e.getMessage());
+      System.exit(1);
+      return;
+    }
+    try (storage) {
+      run(storage, new ChunkPos(centreX, centreZ), radius, threads);
+    }
+  }
+
+  private static void run(RegionStorage storage, ChunkPos centre, int radius, int threads)
+      throws IOException, InterruptedException {
+    List<ChunkPos> positions = new ArrayList<>();
+    for (int dx = -radius; dx <= radius; dx++) {
+      for (int dz = -radius; dz <= radius; dz++) {
+        positions.add(new ChunkPos(centre.x + dx, centre.z + dz));
+      }
+    }
+    positions.sort((a, b) -> Integer.compare(distanceSquared(a, centre), distanceSquared(b, centre)));
+
+    int total = positions.size();
+    AtomicInteger done = new AtomicInteger();
+    AtomicInteger failed = new AtomicInteger();
+    PerlinNoise noise = new PerlinNoise(World.SEED);
+    DensityField density = DensityField.fromOptions(noise);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    // Bounds the chunks waiting to be generated or written, and so the memory in use
+    Semaphore inFlight = new Semaphore(threads * 2);
+
+    System.out.println("Pregenerating " + total + " chunks around " + centre + " with " + threads + " threads");
+    long start = System.nanoTime();
+    long nextReport = start + PROGRESS_INTERVAL_NANOS;
+    int skipped = 0;
+
+    for (ChunkPos pos : positions) {
+      if (storage.contains(pos.x, pos.z)) {
+        skipped++;
+        continue;
+      }
+      inFlight.acquire();
+      pool.submit(() -> {
+        try {
+          long chunkStart = System.nanoTime();
+          storage.save(new Chunk(pos.x, pos.z, noise, density));
+          Metrics.recordTime("pregen.chunk", System.nanoTime() - chunkStart);
+          done.incrementAndGet();
+        } catch (Exception e) {
+          failed.incrementAndGet();
+          System.err.println("Error pregenerating chunk at " + pos.x + "," + pos.z + ": " + e.getMessage());
+        } finally {
+          inFlight.release();
+        }
+      });
+
+      if (System.nanoTime() >= nextReport) {
+        nextReport += PROGRESS_INTERVAL_NANOS;
+        report(done.get() + skipped, total, done.get(), start);
+      }
+    }
+    if (skipped > 0) {
+      System.out.println("Resumed: " + skipped + " chunks were already on disk");
+    }
+
+    pool.shutdown();
+    while (!pool.awaitTermination(PROGRESS_INTERVAL_NANOS, TimeUnit.NANOSECONDS)) {
+      report(done.get() + skipped, total, done.get(), start);
+    }
+    report(done.get() + skipped, total, done.get(), start);
+    if (failed.get() > 0) {
+      System.err.println(failed.get() + " chunks failed, run again to retry them");
+    }
+    Metrics.reportIfDue();
+  }
+
+  private static void report(int complete, int total, int generated, long start) {
+    double seconds = (System.nanoTime() - start) / 1e9;
+    double rate = generated / Math.max(seconds, 1e-9);
+    double remaining = rate > 0 ? (total - complete) / rate : 0;
+    System.out.printf("%d/%d chunks (%.1f%%), %.0f chunks/s, %.0fs left%n",
+        complete, total, 100.0 * complete / total, rate, remaining);
+  }
+
+  private static int distanceSquared(ChunkPos a, ChunkPos b) {
+    int dx = a.x - b.x;
+    int dz = a.z - b.z;
+    return dx * dx + dz * dz;
+  }
+}
@@ -0,0 +1,54 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format shared by {@link GameServer} and {@link LoadTest}. Every message is a frame of
+ * [int length][byte type][payload], where length counts the type byte and the payload.
+ */
+public final class Protocol {
+  public static final int MAX_FRAME = 1 << 20;
+
+  // Client to server
+  public static final byte HELLO = 1;            // int view distance
+  public static final byte MOVE = 2;             // float x, y, z
+  public static final byte SET_BLOCK = 3;        // int x, y, z, short type
+
+  // Server to client
+  public static final byte WELCOME = 10;         // int player id, int view distance, float x, y, z
+  public static final byte CHUNK = 11;           // ChunkCodec bytes
+  public static final byte UNLOAD_CHUNK = 12;    // int chunkX, chunkZ
+  public static final byte BLOCK_DELTAS = 13;    // int count, then int x, y, z, short type each
+  public static final byte PLAYER_POSITIONS = 14; // int count, then int id, float x, y, z each
+  public static final byte PLAYER_LEFT = 15;     // int player id
+
+  public static final int BLOCK_DELTA_BYTES = 3 * Integer.BYTES + Short.BYTES;
+  public static final int PLAYER_POSITION_BYTES = Integer.BYTES + 3 * Float.BYTES;
+
+  private Protocol() {
+  }
+
+  /** Allocates a frame with the header written; fill in exactly payloadSize bytes, then flip. */
+  public static ByteBuffer frame(byte type, int payloadSize) {
+    ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + 1 + payloadSize);
+    frame.putInt(1 + payloadSize).put(type);
+    return frame;
+  }
+
+  /**
+   * Returns the next complete frame in {@code in} as a buffer positioned on the type byte,
+   * or null if more bytes are needed. {@code in} must be in read mode.
+   */
+  public static ByteBuffer nextFrame(ByteBuffer in) {
+    if (in.remaining() < Integer.BYTES) return null;
+    int length = in.getInt(in.position());
+    if (length <= 0 || length > MAX_FRAME) {
+      throw new IllegalStateException("Bad frame length " + length);
+    }
+    if (in.remaining() < Integer.BYTES + length) return null;
+
+    ByteBuffer frame = in.slice(in.position() + Integer.BYTES, length);
+    in.position(in.position() + Integer.BYTES + length);
+    return frame;
+  }
+}
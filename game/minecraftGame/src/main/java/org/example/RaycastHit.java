@@ -0,0 +1,25 @@
+package org.example;
+
+/**
+ * Result of {@link World#raycast}. Meant to be allocated once and reused, so a ray query
+ * does not create garbage.
+ */
+public class RaycastHit {
+  public boolean hit;
+  public int x, y, z;
+  public int blockType;
+  // Face of the hit block the ray entered through, same order as ChunkMesher (+X, -X, +Y, -Y, +Z, -Z),
+  // or -1 when the ray started inside the block
+  public int face;
+  public float distance;
+
+  // Chunk the last ray was stepping through, kept so consecutive rays can skip the map lookup
+  Chunk chunk;
+
+  void miss(float distance) {
+    hit = false;
+    blockType = BlockRegistry.AIR;
+    face = -1;
+    this.distance = distance;
+  }
+}
@@ -0,0 +1,173 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Chunks on disk, grouped into region files of 32x32 chunks named r.&lt;x&gt;.&lt;z&gt;.bin.
+ *
+ * A region file starts with a table of 1024 (int offset, int length) entries, indexed
+ * (z &amp; 31) * 32 + (x &amp; 31), followed by the chunks as deflated {@link ChunkCodec} data.
+ * A chunk is appended to the end of its file before its table entry is written, so killing
+ * the process mid-save loses at most the chunk being written, never one that was already saved.
+ * Rewriting a chunk leaves its old data behind as unused space.
+ *
+ * Safe to use from several threads; writes to one region file are serialised.
+ */
+public class RegionStorage implements AutoCloseable {
+  private static final int REGION_SHIFT = 5;
+  private static final int REGION_CHUNKS = 1 << REGION_SHIFT;
+  private static final int TABLE_ENTRIES = REGION_CHUNKS * REGION_CHUNKS;
+  private static final int TABLE_BYTES = TABLE_ENTRIES * 2 * Integer.BYTES;
+  private static final String TERRAIN_FILE = "terrain.txt";
+
+  private final Path directory;
+  private final Map<Long, Region> regions = new HashMap<>();
+
+  private static class Region {
+    final FileChannel channel;
+    final int[] offsets = new int[TABLE_ENTRIES];
+    final int[] lengths = new int[TABLE_ENTRIES];
+    long end;
+
+    Region(FileChannel channel) throws IOException {
+      this.channel = channel;
+      ByteBuffer table = ByteBuffer.allocate(TABLE_BYTES);
+      if (channel.size() >= TABLE_BYTES) {
+        while (table.hasRemaining() && channel.read(table, table.position()) > 0) {
+          // keep reading until the table is complete
+        }
+        table.flip();
+        for (int i = 0; i < TABLE_ENTRIES; i++) {
+          offsets[i] = table.getInt();
+          lengths[i] = table.getInt();
+        }
+      } else {
+        channel.write(table, 0);
+      }
+      end = Math.max(TABLE_BYTES, channel.size());
+    }
+  }
+
+  /**
+   * Opens the region files in {@code directory}, which must have been written with the same
+   * {@code terrain} kind (see {@link DensityField#terrainOption}); the kind is kept in a
+   * terrain.txt file next to them. A directory without one takes the given kind.
+   */
+  public RegionStorage(Path directory, String terrain) throws IOException {
+    this.directory = directory;
+    Files.createDirectories(directory);
+    Path metadata = directory.resolve(TERRAIN_FILE);
+    if (Files.exists(metadata)) {
+      String stored = Files.readString(metadata).trim();
+      if (!stored.equals(terrain)) {
+        throw new IOException(directory + " holds " + stored + " terrain, not " + terrain
+            + "; run with -Dgame.terrain=" + stored + " or use another directory");
+      }
+    } else {
+      Files.writeString(metadata, terrain + "\n");
+    }
+  }
+
+  /** True if the directory holds at least one region file. */
+  public static boolean exists(Path directory) {
+    try (var files = Files.list(directory)) {
+      return files.anyMatch(file -> file.getFileName().toString().startsWith("r."));
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  public boolean contains(int chunkX, int chunkZ) throws IOException {
+    Region region = region(chunkX, chunkZ, false);
+    if (region == null) return false;
+    synchronized (region) {
+      return region.lengths[entry(chunkX, chunkZ)] > 0;
+    }
+  }
+
+  /** Reads a chunk, or returns null if it has not been saved. */
+  public Chunk load(int chunkX, int chunkZ) throws IOException {
+    Region region = region(chunkX, chunkZ, false);
+    if (region == null) return null;
+    int offset, length;
+    synchronized (region) {
+      offset = region.offsets[entry(chunkX, chunkZ)];
+      length = region.lengths[entry(chunkX, chunkZ)];
+    }
+    if (length == 0) return null;
+
+    ByteBuffer compressed = ByteBuffer.allocate(length);
+    while (compressed.hasRemaining()) {
+      if (region.channel.read(compressed, offset + compressed.position()) < 0) {
+        throw new IOException("Region file ends inside chunk " + chunkX + "," + chunkZ);
+      }
+    }
+
+    try {
+      return ChunkCodec.decodeCompressed(compressed.array(), 0, length);
+    } catch (IOException e) {
+      throw new IOException("Error reading chunk " + chunkX + "," + chunkZ + ": " + e.getMessage(), e);
+    }
+  }
+
+  /** Saves a chunk's current blocks, replacing any earlier copy. */
+  public void save(Chunk chunk) throws IOException {
+    byte[] compressed = ChunkCodec.encodeCompressed(chunk);
+    int length = compressed.length;
+
+    Region region = region(chunk.getChunkX(), chunk.getChunkZ(), true);
+    int entry = entry(chunk.getChunkX(), chunk.getChunkZ());
+    synchronized (region) {
+      long offset = region.end;
+      if (offset + length > Integer.MAX_VALUE) {
+        throw new IOException("Region file full at chunk " + chunk.getChunkX() + "," + chunk.getChunkZ());
+      }
+      ByteBuffer data = ByteBuffer.wrap(compressed, 0, length);
+      while (data.hasRemaining()) {
+        region.channel.write(data, offset + data.position());
+      }
+      ByteBuffer tableEntry = ByteBuffer.allocate(2 * Integer.BYTES);
+      tableEntry.putInt((int) offset).putInt(length).flip();
+      region.channel.write(tableEntry, (long) entry * 2 * Integer.BYTES);
+
+      region.end = offset + length;
+      region.offsets[entry] = (int) offset;
+      region.lengths[entry] = length;
+    }
+  }
+
+  private static int entry(int chunkX, int chunkZ) {
+    return (chunkZ & (REGION_CHUNKS - 1)) * REGION_CHUNKS + (chunkX & (REGION_CHUNKS - 1));
+  }
+
+  // Opens region files on first use; returns null for a missing file unless create is set
+  private synchronized Region region(int chunkX, int chunkZ, boolean create) throws IOException {
+    int regionX = chunkX >> REGION_SHIFT;
+    int regionZ = chunkZ >> REGION_SHIFT;
+    long key = ChunkPos.asLong(regionX, regionZ);
+    Region region = regions.get(key);
+    if (region == null) {
+      Path file = directory.resolve("r." + regionX + "." + regionZ + ".bin");
+      if (!create && !Files.exists(file)) return null;
+      region = new Region(FileChannel.open(file, StandardOpenOption.CREATE,
+          StandardOpenOption.READ, StandardOpenOption.WRITE));
+      regions.put(key, region);
+    }
+    return region;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    for (Region region : regions.values()) {
+      region.channel.close();
+    }
+    regions.clear();
+  }
+}
@@ -0,0 +1,90 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over entity positions for neighbour queries. Cells are hashed into a
+ * power-of-two bucket table and each bucket is an intrusive linked list through
+ * {@code next}, so a rebuild allocates nothing once the arrays are large enough.
+ *
+ * Rebuild on one thread, then query from any number of threads until the next rebuild.
+ */
+public class SpatialHash {
+  private final float cellSize;
+  private final float inverseCellSize;
+  private int[] buckets = new int[0];
+  private int[] next = new int[0];
+  private int mask;
+
+  private float[] xs, ys, zs;
+
+  public SpatialHash(float cellSize) {
+    this.cellSize = cellSize;
+    this.inverseCellSize = 1.0f / cellSize;
+  }
+
+  public void build(float[] xs, float[] ys, float[] zs, int count) {
+    this.xs = xs;
+    this.ys = ys;
+    this.zs = zs;
+
+    // Keep the table at least twice the entity count so chains stay short
+    int size = Integer.highestOneBit(Math.max(16, count * 2) - 1) << 1;
+    if (buckets.length != size) {
+      buckets = new int[size];
+      mask = size - 1;
+    }
+    Arrays.fill(buckets, -1);
+    if (next.length < count) {
+      next = new int[Math.max(count, next.length * 2)];
+    }
+
+    for (int i = 0; i < count; i++) {
+      int bucket = bucket(cell(xs[i]), cell(ys[i]), cell(zs[i]));
+      next[i] = buckets[bucket];
+      buckets[bucket] = i;
+    }
+  }
+
+  /**
+   * Writes the indices of entities within {@code radius} of the point into {@code out},
+   * stopping when it is full, and returns how many were written.
+   */
+  public int query(float x, float y, float z, float radius, int[] out) {
+    if (radius > cellSize * 8) {
+      throw new IllegalArgumentException("Radius " + radius + " is too large for cell size " + cellSize);
+    }
+    float radiusSquared = radius * radius;
+    int minX = cell(x - radius), maxX = cell(x + radius);
+    int minY = cell(y - radius), maxY = cell(y + radius);
+    int minZ = cell(z - radius), maxZ = cell(z + radius);
+    int found = 0;
+
+    for (int cx = minX; cx <= maxX; cx++) {
+      for (int cy = minY; cy <= maxY; cy++) {
+        for (int cz = minZ; cz <= maxZ; cz++) {
+          for (int i = buckets[bucket(cx, cy, cz)]; i != -1; i = next[i]) {
+            // Several cells can share a bucket, only take entities that are really in this cell
+            if (cell(xs[i]) != cx || cell(ys[i]) != cy || cell(zs[i]) != cz) continue;
+            float dx = xs[i] - x;
+            float dy = ys[i] - y;
+            float dz = zs[i] - z;
+            if (dx * dx + dy * dy + dz * dz > radiusSquared) continue;
+            out[found++] = i;
+            if (found == out.length) return found;
+          }
+        }
+      }
+    }
+    return found;
+  }
+
+  private int cell(float coordinate) {
+    return (int) Math.floor(coordinate * inverseCellSize);
+  }
+
+  private int bucket(int cx, int cy, int cz) {
+    int hash = cx * 0x8DA6B343 ^ cy * 0xD8163841 ^ cz * 0xCB1AB31F;
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+}
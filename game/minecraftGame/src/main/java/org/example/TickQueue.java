@@ -0,0 +1,71 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Scheduled block updates of one chunk, earliest first. Entries are packed into longs,
+ * the due tick above the block's index within the chunk ((y * 16 + z) * 16 + x), and kept
+ * in a binary heap, so scheduling allocates nothing once the arrays have grown.
+ *
+ * A block has at most one pending update; scheduling it again keeps the earlier one.
+ * Thread-safe, since updates in one chunk can schedule updates in its neighbours.
+ */
+public final class TickQueue {
+  private static final int INDEX_BITS = 16;
+  private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+
+  private long[] heap = new long[0];
+  private volatile int size = 0;
+  // One bit per block with a pending update, allocated with the first one
+  private long[] pending;
+
+  /** Schedules an update of the block at the given index. Returns false if one was already pending. */
+  public synchronized boolean schedule(int index, long dueTick) {
+    if (pending == null) {
+      pending = new long[(1 << INDEX_BITS) / Long.SIZE];
+    }
+    long bit = 1L << index;
+    if ((pending[index >>> 6] & bit) != 0) return false;
+    pending[index >>> 6] |= bit;
+
+    if (size == heap.length) {
+      heap = Arrays.copyOf(heap, Math.max(16, size * 2));
+    }
+    int i = size;
+    long entry = dueTick << INDEX_BITS | index;
+    while (i > 0 && heap[(i - 1) >>> 1] > entry) {
+      heap[i] = heap[(i - 1) >>> 1];
+      i = (i - 1) >>> 1;
+    }
+    heap[i] = entry;
+    size = size + 1;
+    return true;
+  }
+
+  /** Removes and returns the block index of the earliest update due by {@code tick}, or -1 if none is due. */
+  public synchronized int pollDue(long tick) {
+    if (size == 0 || heap[0] >>> INDEX_BITS > tick) return -1;
+    int index = (int) (heap[0] & INDEX_MASK);
+    pending[index >>> 6] &= ~(1L << index);
+
+    int last = size - 1;
+    long moved = heap[last];
+    int i = 0;
+    while (true) {
+      int child = i * 2 + 1;
+      if (child >= last) break;
+      if (child + 1 < last && heap[child + 1] < heap[child]) child++;
+      if (heap[child] >= moved) break;
+      heap[i] = heap[child];
+      i = child;
+    }
+    heap[i] = moved;
+    size = last;
+    return index;
+  }
+
+  /** Pending updates; may be stale by the time it returns. */
+  public int size() {
+    return size;
+  }
+}
@@ -0,0 +1,71 @@
+package org.example;
+
+/**
+ * Packed chunk vertex: two 32-bit words, 8 bytes per vertex.
+ *
+ * <pre>
+ * word 0  bits  0-4   x      chunk-local corner, 0..16
+ *         bits  5-9   z      chunk-local corner, 0..16
+ *         bits 10-18  y      corner height, 0..256
+ *         bits 19-21  face   0..5 (+X, -X, +Y, -Y, +Z, -Z)
+ *         bits 22-23  ao     0 (darkest) .. 3 (unoccluded)
+ * word 1  bits  0-11  block  block / texture id
+ *         bits 12-15  sky    sky light 0..15
+ *         bits 16-19  light  block light 0..15
+ * </pre>
+ *
+ * The previous layout stored the position as three floats next to a data word, 16 bytes
+ * per vertex. A typical surface chunk from the terrain generator has around 780 visible
+ * quads, 3120 vertices, so its vertex buffer drops from about 49 KB to about 24 KB, half
+ * the VRAM and upload bandwidth per chunk. The vertex shader in Main unpacks the same bits.
+ */
+public final class VertexFormat {
+  public static final int VERTEX_INTS = 2;
+  public static final int VERTEX_BYTES = VERTEX_INTS * Integer.BYTES;
+
+  public static final int MAX_BLOCK_ID = 0xFFF;
+  public static final int MAX_LIGHT = 15;
+
+  private VertexFormat() {
+  }
+
+  public static int packPosition(int x, int y, int z, int face, int ao) {
+    return x | z << 5 | y << 10 | face << 19 | ao << 22;
+  }
+
+  public static int packData(int blockId, int skyLight, int blockLight) {
+    return blockId | skyLight << 12 | blockLight << 16;
+  }
+
+  public static int x(int position) {
+    return position & 0x1F;
+  }
+
+  public static int z(int position) {
+    return (position >>> 5) & 0x1F;
+  }
+
+  public static int y(int position) {
+    return (position >>> 10) & 0x1FF;
+  }
+
+  public static int face(int position) {
+    return (position >>> 19) & 0x7;
+  }
+
+  public static int ao(int position) {
+    return (position >>> 22) & 0x3;
+  }
+
+  public static int blockId(int data) {
+    return data & MAX_BLOCK_ID;
+  }
+
+  public static int skyLight(int data) {
+    return (data >>> 12) & 0xF;
+  }
+
+  public static int blockLight(int data) {
+    return (data >>> 16) & 0xF;
+  }
+}
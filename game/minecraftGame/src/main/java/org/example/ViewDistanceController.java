@@ -0,0 +1,73 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Adjusts the world's render distance to keep frame times within a budget.
+ *
+ * Frame times are collected in windows of {@link #WINDOW} frames. Once a window
+ * is full its 95th percentile is compared against the target: above {@link #SHRINK_ABOVE}
+ * of the target the distance drops by one chunk straight away; below {@link #GROW_BELOW} of
+ * it for {@link #GROW_AFTER} windows in a row the distance grows by one. The gap between
+ * the two thresholds keeps it from oscillating, and since windows do not overlap, the
+ * window after a change measures the cost of loading and meshing the new ring.
+ *
+ * Measure the CPU work of a frame without the buffer swap, since with v-sync the swap
+ * pads every frame out to the refresh interval.
+ *
+ * Target with -Dgame.frameTargetMs (default 16.6); turn off with -Dgame.adaptiveView=false.
+ */
+public class ViewDistanceController {
+  public static final boolean ENABLED = !"false".equals(System.getProperty("game.adaptiveView"));
+
+  private static final int WINDOW = 120;
+  private static final double SHRINK_ABOVE = 1.0;
+  private static final double GROW_BELOW = 0.7;
+  private static final int GROW_AFTER = 3;
+
+  private final World world;
+  private final double targetMillis;
+  private final float[] frameMillis = new float[WINDOW];
+  private final float[] sorted = new float[WINDOW];
+  private int frames = 0;
+  private int fastWindows = 0;
+
+  public ViewDistanceController(World world) {
+    this.world = world;
+    this.targetMillis = Double.parseDouble(System.getProperty("game.frameTargetMs", "16.6"));
+  }
+
+  /** Records one frame's duration and adjusts the render distance when a window completes. */
+  public void recordFrame(long nanos) {
+    frameMillis[frames++] = nanos / 1_000_000f;
+    if (frames < WINDOW) return;
+    frames = 0;
+
+    System.arraycopy(frameMillis, 0, sorted, 0, WINDOW);
+    Arrays.sort(sorted);
+    double p95 = sorted[(int) Math.ceil(WINDOW * 0.95) - 1];
+    Metrics.setGauge("frame.p95Ms", p95);
+    if (!ENABLED) return;
+
+    int distance = world.getRenderDistance();
+    if (p95 > targetMillis * SHRINK_ABOVE) {
+      fastWindows = 0;
+      if (distance > World.MIN_VIEW_DISTANCE) {
+        change(distance, distance - 1, p95);
+      }
+    } else if (p95 < targetMillis * GROW_BELOW) {
+      if (++fastWindows >= GROW_AFTER && distance < World.MAX_VIEW_DISTANCE) {
+        fastWindows = 0;
+        change(distance, distance + 1, p95);
+      }
+    } else {
+      fastWindows = 0;
+    }
+  }
+
+  private void change(int from, int to, double p95) {
+    world.setRenderDistance(to);
+    Metrics.increment("view.changes");
+    System.out.printf("Render distance %d -> %d (p95 frame %.1f ms, target %.1f ms)%n", from, to, p95, targetMillis);
+  }
+}
@@ -1,84 +1,722 @@
 package org.example;
 
 import org.joml.Vector3f;
-import org.joml.Vector3i;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.LongPredicate;
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.example.GLProfiler.glGetInteger;
+import static org.example.GLProfiler.glGetUniformLocation;
 
 public class World {
   // Constants
-  public static final int AIR = 0;
-  public static final int GRASS = 1;
-  public static final int DIRT = 2;
-  public static final int STONE = 3;
   public static final int CHUNK_SIZE = 16;
-  public static final int RENDER_DISTANCE = 4      ;
+  public static final int WORLD_HEIGHT = 256;
+  public static final int DEFAULT_RENDER_DISTANCE = 4;
+  public static final int MIN_VIEW_DISTANCE = 2;
+  public static final int MAX_VIEW_DISTANCE = 16;
+  /** Simulation distance that covers every loaded chunk, for servers without a single viewer. */
+  public static final int UNLIMITED = Integer.MAX_VALUE;
+  // Chunks are only unloaded this far outside the load distance, so walking back and forth
+  // over a chunk border does not reload them
+  private static final int UNLOAD_MARGIN = 2;
+  public static final int SEED = 12345;
+  /** Rays are cut off at this many blocks, whatever distance is asked for. */
+  public static final float MAX_RAY_DISTANCE = 1024;
+  // Where Pregenerator puts region files; a world found here is loaded instead of generated
+  public static final Path WORLD_DIRECTORY = Paths.get(System.getProperty("game.worldDir", "world"));
 
   // Member variables
-  private final ConcurrentHashMap<ChunkPos, Chunk> chunks = new ConcurrentHashMap<>();
+  private final ChunkMap chunks = new ChunkMap();
+  private final Set<ChunkPos> pendingChunks = ConcurrentHashMap.newKeySet();
   private final PerlinNoise noise;
+  private final DensityField density;
+  private final RegionStorage storage;
   private final ExecutorService chunkLoader;
-  private Vector3i lastPlayerChunk = new Vector3i(0, 0, 0);
+  // Written by the main thread, read by the tick's parallel passes; ChunkPos is immutable so
+  // readers always see a matching x and z
+  private volatile ChunkPos lastPlayerChunk = new ChunkPos(0, 0);
+  // Chunk offsets up to the largest load distance, nearest first
+  private static final int[] AREA_OFFSETS = buildAreaOffsets(MAX_VIEW_DISTANCE + 1);
+
+  // Radii in chunks around the player, adjustable at runtime (see ViewDistanceController).
+  // The load distance is set on its own (-Dgame.loadDistance), but always reaches at least one
+  // further than rendering so border chunks have neighbours to mesh against.
+  private volatile int renderDistance = DEFAULT_RENDER_DISTANCE;
+  private volatile int loadDistance = DEFAULT_RENDER_DISTANCE + 1;
+  // 0 while the load distance just follows the render distance
+  private volatile int configuredLoadDistance = 0;
+  private volatile int simulationDistance = Integer.getInteger("game.simulationDistance", DEFAULT_RENDER_DISTANCE);
+  private int requestedLoadDistance = loadDistance;
+  // Unloaded chunks whose GL objects still have to be freed on the render thread
+  private final Queue<Chunk> unloadedChunks = new ConcurrentLinkedQueue<>();
+  private final ChunkMesher mesher = new ChunkMesher();
+  private final Chunk[] neighbourhood = new Chunk[9];
+  private final EntityStore entities = new EntityStore();
+  private final BlockUpdates blockUpdates = new BlockUpdates(this);
+  private volatile BlockChangeListener blockChangeListener;
+  // Ticks and block updates since windowStart, published once a second
+  private long windowStart = System.nanoTime();
+  private int windowTicks = 0;
+  private long windowUpdates = 0;
 
   public World() {
-    // Use a fixed thread pool with fewer threads to prevent overwhelming the system
-    this.chunkLoader = Executors.newFixedThreadPool(2);
-    this.noise = new PerlinNoise(12345);
+    // Leave one core for the render thread
+    this(Math.max(2, Runtime.getRuntime().availableProcessors() - 1));
+  }
+
+  public World(int loaderThreads) {
+    // Daemon threads so a caller that never reaches cleanup() still lets the JVM exit
+    this.chunkLoader = Executors.newFixedThreadPool(loaderThreads, task -> {
+      Thread thread = new Thread(task, "chunk-loader");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.noise = new PerlinNoise(SEED);
+    this.density = DensityField.fromOptions(noise);
+    this.storage = openStorage();
+
+    setRenderDistance(Integer.getInteger("game.renderDistance", DEFAULT_RENDER_DISTANCE));
+    setLoadDistance(Integer.getInteger("game.loadDistance", 0));
+    setSimulationDistance(simulationDistance);
+    requestedLoadDistance = loadDistance;
+
+    // The spawn area loads in the background, nearest first, so the window can open meanwhile
+    requestArea(0, 0);
+    spawnTestEntities(Integer.getInteger("game.entities", 0));
+  }
+
+  /**
+   * Loads every chunk in the square of the given radius on the calling thread and returns
+   * once they are all present. Used where the terrain has to exist before going on.
+   */
+  public void loadArea(int centreX, int centreZ, int radius) {
+    for (int x = centreX - radius; x <= centreX + radius; x++) {
+      for (int z = centreZ - radius; z <= centreZ + radius; z++) {
+        if (getChunk(x, z) == null) {
+          addChunk(loadOrGenerate(x, z));
+        }
+      }
+    }
+  }
+
+  // -Dgame.entities=N scatters N wandering mobs over the spawn chunks
+  private void spawnTestEntities(int amount) {
+    if (amount == 0) return;
+    loadArea(0, 0, 2);
+    Random random = new Random(12345);
+    for (int i = 0; i < amount; i++) {
+      float x = random.nextFloat() * 48 - 24;
+      float z = random.nextFloat() * 48 - 24;
+      entities.spawnMob(x, getSurfaceHeight((int) Math.floor(x), (int) Math.floor(z)) + 0.5f, z);
+    }
+  }
+
+  public EntityStore getEntities() {
+    return entities;
+  }
+
+  public BlockUpdates getBlockUpdates() {
+    return blockUpdates;
+  }
+
+  /**
+   * Told about every block changed by {@link #setBlock} and by block updates, on the thread
+   * calling setBlock or {@link #tick}, and about every chunk changed by a bulk edit or
+   * {@link #restoreSnapshot}, on the thread calling those.
+   */
+  public interface BlockChangeListener {
+    void blockChanged(int x, int y, int z, int type);
+
+    /** Any number of the chunk's blocks changed at once; anything derived from it is stale. */
+    void chunkChanged(int chunkX, int chunkZ);
+  }
+
+  /** Replaces the listener for block changes; null for none. */
+  public void setBlockChangeListener(BlockChangeListener listener) {
+    blockChangeListener = listener;
+  }
+
+  BlockChangeListener getBlockChangeListener() {
+    return blockChangeListener;
+  }
+
+  /** Advances everything simulated in the world by one fixed step. Call from a single thread. */
+  public void tick(float dt) {
+    entities.tick(this, dt);
+    windowUpdates += blockUpdates.tick();
+
+    windowTicks++;
+    long now = System.nanoTime();
+    if (now - windowStart >= 1_000_000_000L) {
+      double seconds = (now - windowStart) / 1e9;
+      Metrics.setGauge("world.ticksPerSecond", windowTicks / seconds);
+      Metrics.setGauge("blockUpdates.perSecond", windowUpdates / seconds);
+      windowStart = now;
+      windowTicks = 0;
+      windowUpdates = 0;
+    }
+  }
+
+  private static RegionStorage openStorage() {
+    if (!RegionStorage.exists(WORLD_DIRECTORY)) return null;
+    try {
+      System.out.println("Loading pregenerated world from " + WORLD_DIRECTORY);
+      return new RegionStorage(WORLD_DIRECTORY, DensityField.terrainOption());
+    } catch (IOException e) {
+      System.err.println("Error opening " + WORLD_DIRECTORY + ", generating instead: " + e.getMessage());
+      return null;
+    }
+  }
+
+  // Pregenerated chunks come from disk, anything outside the pregenerated area is generated
+  private Chunk loadOrGenerate(int chunkX, int chunkZ) {
+    if (storage != null) {
+      try {
+        Chunk chunk = storage.load(chunkX, chunkZ);
+        if (chunk != null) return chunk;
+      } catch (IOException e) {
+        System.err.println("Error loading chunk at " + chunkX + "," + chunkZ + ": " + e.getMessage());
+      }
+    }
+    return new Chunk(chunkX, chunkZ, noise, density);
+  }
+
+  private void addChunk(Chunk chunk) {
+    // loadArea and the loader threads can both produce a chunk; the first one stays
+    if (chunks.putIfAbsent(chunk) != null) return;
+    markNeighboursDirty(chunk);
+  }
+
+  // Border faces and AO of the surrounding chunks depend on this one
+  void markNeighboursDirty(Chunk chunk) {
+    for (int dx = -1; dx <= 1; dx++) {
+      for (int dz = -1; dz <= 1; dz++) {
+        Chunk neighbour = nearby(chunk, chunk.getChunkX() + dx, chunk.getChunkZ() + dz);
+        if (neighbour != null && neighbour != chunk) {
+          neighbour.markDirty();
+        }
+      }
+    }
+  }
+
+  public Chunk getChunk(int chunkX, int chunkZ) {
+    return chunks.get(chunkX, chunkZ);
+  }
+
+  /**
+   * Like {@link #getChunk}, but follows the neighbour links of {@code from} when the chunk is
+   * next to it. For walks over neighbouring chunks such as rays and collision boxes.
+   */
+  Chunk nearby(Chunk from, int chunkX, int chunkZ) {
+    if (from == null) return getChunk(chunkX, chunkZ);
+    int dx = chunkX - from.getChunkX();
+    int dz = chunkZ - from.getChunkZ();
+    if (dx < -1 || dx > 1 || dz < -1 || dz > 1) return getChunk(chunkX, chunkZ);
+    Chunk chunk = from.getNeighbour(dx, dz);
+    // Links miss a diagonal when both chunks between are unloaded, and any chunk for a moment
+    // after it is published, before ChunkMap links it up
+    return chunk != null ? chunk : getChunk(chunkX, chunkZ);
+  }
 
-    // Generate initial chunks synchronously to ensure they're available for rendering
-    generateInitialChunks();
+  /** A live view of the loaded chunks; iterating it never blocks loading or unloading. */
+  public Collection<Chunk> getLoadedChunks() {
+    return chunks.values();
   }
 
-  private void generateInitialChunks() {
-    // Generate a smaller initial area to start faster
-    for (int x = -1; x <= 1; x++) {
-      for (int z = -1; z <= 1; z++) {
-        Chunk chunk = new Chunk(x, z, noise);
-        chunks.put(new ChunkPos(x, z), chunk);
+  /**
+   * Replaces loaded chunks with those from a {@link WorldSnapshot}, decoding on {@code threads}
+   * threads. Replaced chunks are cleaned up on the next render like unloaded ones. Restored
+   * chunks count as modified, so they are saved rather than regenerated once unloaded, and the
+   * {@link BlockChangeListener} hears about each of them on the calling thread.
+   */
+  public void restoreSnapshot(Path file, int threads) throws IOException, InterruptedException {
+    Queue<Chunk> restored = new ConcurrentLinkedQueue<>();
+    try (WorldSnapshot.Reader reader = new WorldSnapshot.Reader(file)) {
+      reader.loadAll(chunk -> {
+        chunk.markModified();
+        Chunk old = chunks.put(chunk);
+        if (old != null) {
+          unloadedChunks.add(old);
+        }
+        markNeighboursDirty(chunk);
+        restored.add(chunk);
+      }, threads);
+    } finally {
+      // Chunks restored before a failure are in the world too
+      BlockChangeListener listener = blockChangeListener;
+      if (listener != null) {
+        for (Chunk chunk : restored) {
+          listener.chunkChanged(chunk.getChunkX(), chunk.getChunkZ());
+        }
+      }
+    }
+  }
+
+  /** 3x3 chunks around the given one, indexed (dz + 1) * 3 + (dx + 1). Reused between calls. */
+  Chunk[] getNeighbourhood(Chunk centre) {
+    for (int dz = -1; dz <= 1; dz++) {
+      for (int dx = -1; dx <= 1; dx++) {
+        neighbourhood[(dz + 1) * 3 + (dx + 1)] = nearby(centre, centre.getChunkX() + dx, centre.getChunkZ() + dz);
       }
     }
+    return neighbourhood;
   }
 
   public void updateChunks(Vector3f playerPosition) {
     // Get the chunk the player is in
     int playerChunkX = (int)Math.floor(playerPosition.x) >> 4;
     int playerChunkZ = (int)Math.floor(playerPosition.z) >> 4;
-    Vector3i currentChunk = new Vector3i(playerChunkX, 0, playerChunkZ);
-
-    // Only update chunks if the player has moved to a different chunk
-    if (!currentChunk.equals(lastPlayerChunk)) {
-      lastPlayerChunk.set(currentChunk);
-
-      // Queue chunk generation for chunks in render distance
-      for (int x = playerChunkX - RENDER_DISTANCE; x <= playerChunkX + RENDER_DISTANCE; x++) {
-        for (int z = playerChunkZ - RENDER_DISTANCE; z <= playerChunkZ + RENDER_DISTANCE; z++) {
-          final ChunkPos pos = new ChunkPos(x, z);
-          if (!chunks.containsKey(pos)) {
-            chunkLoader.submit(() -> {
-              try {
-                Chunk chunk = new Chunk(pos.x, pos.z, noise);
-                chunks.put(pos, chunk);
-              } catch (Exception e) {
-                System.err.println("Error generating chunk at " + pos.x + "," + pos.z + ": " + e.getMessage());
-              }
-            });
+    ChunkPos previous = lastPlayerChunk;
+
+    // Only update chunks if the player has moved to a different chunk or the load distance changed
+    int distance = loadDistance;
+    if (playerChunkX != previous.x || playerChunkZ != previous.z || distance != requestedLoadDistance) {
+      lastPlayerChunk = new ChunkPos(playerChunkX, playerChunkZ);
+      requestedLoadDistance = distance;
+      requestArea(playerChunkX, playerChunkZ);
+      unloadDistantChunks(playerChunkX, playerChunkZ, distance + UNLOAD_MARGIN);
+    }
+  }
+
+  // Queues every chunk within the load distance, nearest first so the ground under the player comes first
+  private void requestArea(int centreX, int centreZ) {
+    int distance = loadDistance;
+    for (int i = 0; i < AREA_OFFSETS.length; i += 2) {
+      int dx = AREA_OFFSETS[i], dz = AREA_OFFSETS[i + 1];
+      if (Math.abs(dx) <= distance && Math.abs(dz) <= distance) {
+        requestChunk(centreX + dx, centreZ + dz);
+      }
+    }
+  }
+
+  private void unloadDistantChunks(int centreX, int centreZ, int keepDistance) {
+    unloadChunks(key -> Math.abs(ChunkPos.getX(key) - centreX) <= keepDistance
+        && Math.abs(ChunkPos.getZ(key) - centreZ) <= keepDistance, true);
+  }
+
+  /**
+   * Unloads every chunk whose {@link ChunkPos#asLong} key {@code keep} rejects, for worlds that
+   * are never rendered and have no single player to centre on, such as the server's. Returns
+   * the number unloaded.
+   */
+  public int unloadChunks(LongPredicate keep) {
+    return unloadChunks(keep, false);
+  }
+
+  // Chunks that may have been meshed go to the render thread to free their GL objects
+  private int unloadChunks(LongPredicate keep, boolean rendered) {
+    int unloaded = 0;
+    for (Chunk chunk : chunks.values()) {
+      if (keep.test(ChunkPos.asLong(chunk.getChunkX(), chunk.getChunkZ()))) continue;
+      // Nothing saves edited chunks yet, so they stay loaded rather than losing the edits
+      if (chunk.isModified()) continue;
+      if (chunks.remove(chunk)) {
+        if (rendered) {
+          unloadedChunks.add(chunk);
+        }
+        unloaded++;
+      }
+    }
+    if (unloaded > 0) {
+      Metrics.add("world.chunksUnloaded", unloaded);
+    }
+    return unloaded;
+  }
+
+  public int getRenderDistance() {
+    return renderDistance;
+  }
+
+  public int getLoadDistance() {
+    return loadDistance;
+  }
+
+  public int getSimulationDistance() {
+    return simulationDistance;
+  }
+
+  /** Sets how far chunks are drawn. Takes effect next frame. */
+  public void setRenderDistance(int distance) {
+    distance = Math.max(MIN_VIEW_DISTANCE, Math.min(MAX_VIEW_DISTANCE, distance));
+    renderDistance = distance;
+    Metrics.setGauge("view.renderDistance", distance);
+    updateLoadDistance();
+  }
+
+  /**
+   * Sets how far chunks are loaded, e.g. further than they are drawn so turning around or
+   * walking forward finds them ready; 0 loads one beyond the render distance. Never less than
+   * that, since border chunks need their neighbours to mesh. Takes effect next frame.
+   */
+  public void setLoadDistance(int distance) {
+    configuredLoadDistance = Math.max(0, Math.min(MAX_VIEW_DISTANCE + 1, distance));
+    updateLoadDistance();
+  }
+
+  private void updateLoadDistance() {
+    int distance = Math.max(renderDistance + 1, configuredLoadDistance);
+    loadDistance = distance;
+    Metrics.setGauge("view.loadDistance", distance);
+  }
+
+  /** Sets how far from the player entities are simulated, or {@link #UNLIMITED}. */
+  public void setSimulationDistance(int distance) {
+    simulationDistance = Math.max(0, distance);
+    Metrics.setGauge("view.simulationDistance", distance);
+  }
+
+  /** True if things in the chunk should be ticked: it is loaded and within the simulation distance. */
+  public boolean isSimulated(int chunkX, int chunkZ) {
+    int distance = simulationDistance;
+    ChunkPos centre = lastPlayerChunk;
+    if (distance != UNLIMITED
+        && (Math.abs(chunkX - centre.x) > distance || Math.abs(chunkZ - centre.z) > distance)) {
+      return false;
+    }
+    return getChunk(chunkX, chunkZ) != null;
+  }
+
+  private static int[] buildAreaOffsets(int radius) {
+    List<int[]> offsets = new ArrayList<>();
+    for (int dx = -radius; dx <= radius; dx++) {
+      for (int dz = -radius; dz <= radius; dz++) {
+        offsets.add(new int[] {dx, dz});
+      }
+    }
+    offsets.sort((a, b) -> Integer.compare(a[0] * a[0] + a[1] * a[1], b[0] * b[0] + b[1] * b[1]));
+
+    int[] flat = new int[offsets.size() * 2];
+    for (int i = 0; i < offsets.size(); i++) {
+      flat[i * 2] = offsets.get(i)[0];
+      flat[i * 2 + 1] = offsets.get(i)[1];
+    }
+    return flat;
+  }
+
+  /** Queues generation of a chunk unless it is already loaded or queued. */
+  public void requestChunk(int chunkX, int chunkZ) {
+    if (chunks.get(chunkX, chunkZ) != null) return;
+    final ChunkPos pos = new ChunkPos(chunkX, chunkZ);
+    if (!pendingChunks.add(pos)) return;
+
+    chunkLoader.submit(() -> {
+      try {
+        addChunk(loadOrGenerate(pos.x, pos.z));
+      } catch (Exception e) {
+        System.err.println("Error generating chunk at " + pos.x + "," + pos.z + ": " + e.getMessage());
+      } finally {
+        pendingChunks.remove(pos);
+      }
+    });
+  }
+
+  public int getBlockType(int x, int y, int z) {
+    if (y < 0 || y >= WORLD_HEIGHT) return BlockRegistry.AIR;
+    Chunk chunk = getChunk(x >> 4, z >> 4);
+    return chunk == null ? BlockRegistry.AIR : chunk.getBlockType(x & 0xF, y, z & 0xF);
+  }
+
+  /**
+   * Sets a block by world coordinates and schedules block updates around it, so e.g. water
+   * placed here starts to flow. Returns false if the chunk is not loaded or the block already
+   * has the type, in which case nothing is scheduled or reported.
+   */
+  public boolean setBlock(int x, int y, int z, int type) {
+    checkBlockType(type);
+    if (!setBlockWithoutUpdates(x, y, z, type)) return false;
+    blockUpdates.blockChanged(x, y, z);
+    BlockChangeListener listener = blockChangeListener;
+    if (listener != null) {
+      listener.blockChanged(x, y, z, type);
+    }
+    return true;
+  }
+
+  /** Sets a block without scheduling block updates, for the updates themselves. Returns true if it changed. */
+  boolean setBlockWithoutUpdates(int x, int y, int z, int type) {
+    if (y < 0 || y >= WORLD_HEIGHT) return false;
+    int chunkX = x >> 4;
+    int chunkZ = z >> 4;
+    Chunk chunk = getChunk(chunkX, chunkZ);
+    if (chunk == null) return false;
+
+    int localX = x & 0xF;
+    int localZ = z & 0xF;
+    if (!chunk.setBlock(localX, y, localZ, type)) return false;
+
+    // Blocks on a chunk edge show up in the neighbours' border faces and AO
+    if (localX == 0 || localX == CHUNK_SIZE - 1 || localZ == 0 || localZ == CHUNK_SIZE - 1) {
+      markNeighboursDirty(chunk);
+    }
+    return true;
+  }
+
+  // Work on the part of one section that lies inside an edited box. x, y and z bounds are
+  // inclusive and local to the chunk and section; base is the section's world origin.
+  private interface SectionWork {
+    long apply(Chunk.Edit edit, int sectionY, int x0, int x1, int y0, int y1, int z0, int z1,
+        int baseX, int baseY, int baseZ);
+  }
+
+  private static void checkBlockType(int type) {
+    if (type < 0 || type >= BlockRegistry.size()) {
+      throw new IllegalArgumentException("Unknown block type: " + type);
+    }
+  }
+
+  /** Sets every block in the box. Returns the number of blocks written; unloaded chunks are skipped. */
+  public long fill(AABB box, int type) {
+    checkBlockType(type);
+    short value = (short) type;
+    return editRegion(box, (edit, sectionY, x0, x1, y0, y1, z0, z1, baseX, baseY, baseZ) -> {
+      long blocks = (long) (x1 - x0 + 1) * (y1 - y0 + 1) * (z1 - z0 + 1);
+      // Leave sections that already hold the type alone, so e.g. clearing air over untouched
+      // terrain does not copy them or mark the chunk modified
+      if (!differs(edit.getSection(sectionY), value, x0, x1, y0, y1, z0, z1)) return blocks;
+      short[] section = edit.writableSection(sectionY);
+      for (int y = y0; y <= y1; y++) {
+        for (int z = z0; z <= z1; z++) {
+          int row = (y * CHUNK_SIZE + z) * CHUNK_SIZE;
+          Arrays.fill(section, row + x0, row + x1 + 1, value);
+        }
+      }
+      if (type != BlockRegistry.AIR) edit.raiseHeight(baseY + y1 + 1);
+      return blocks;
+    });
+  }
+
+  // True if any block of the section in the given local bounds is not type; null is all air
+  private static boolean differs(short[] section, short type, int x0, int x1, int y0, int y1, int z0, int z1) {
+    if (section == null) return type != BlockRegistry.AIR;
+    for (int y = y0; y <= y1; y++) {
+      for (int z = z0; z <= z1; z++) {
+        int row = (y * CHUNK_SIZE + z) * CHUNK_SIZE;
+        for (int x = row + x0; x <= row + x1; x++) {
+          if (section[x] != type) return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /** Changes every block of type {@code from} in the box to {@code to}. Returns the number changed. */
+  public long replace(AABB box, int from, int to) {
+    checkBlockType(from);
+    checkBlockType(to);
+    if (from == to) return 0;
+    return editRegion(box, (edit, sectionY, x0, x1, y0, y1, z0, z1, baseX, baseY, baseZ) -> {
+      short[] section = edit.getSection(sectionY);
+      if (section == null && from != BlockRegistry.AIR) return 0;
+      long changed = 0;
+      int top = -1;
+      for (int y = y0; y <= y1; y++) {
+        for (int z = z0; z <= z1; z++) {
+          int row = (y * CHUNK_SIZE + z) * CHUNK_SIZE;
+          for (int x = x0; x <= x1; x++) {
+            int current = section == null ? BlockRegistry.AIR : section[row + x];
+            if (current != from) continue;
+            // Only copy the section once something in it actually matches
+            if (changed == 0) section = edit.writableSection(sectionY);
+            section[row + x] = (short) to;
+            changed++;
+            top = y;
+          }
+        }
+      }
+      if (top >= 0 && to != BlockRegistry.AIR) edit.raiseHeight(baseY + top + 1);
+      return changed;
+    });
+  }
+
+  /** Copies the blocks in the box; unloaded chunks and anything outside the world read as air. */
+  public Clipboard copy(AABB box) {
+    if (box.getVolume() > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Region too large to copy: " + box);
+    }
+    long start = System.nanoTime();
+    Clipboard clipboard = new Clipboard(box.getSizeX(), box.getSizeY(), box.getSizeZ());
+    short[] out = clipboard.blocks();
+    int minY = Math.max(0, box.minY);
+    int maxY = Math.min(WORLD_HEIGHT - 1, box.maxY);
+
+    for (int chunkX = box.minX >> 4; chunkX <= box.maxX >> 4; chunkX++) {
+      for (int chunkZ = box.minZ >> 4; chunkZ <= box.maxZ >> 4; chunkZ++) {
+        Chunk chunk = getChunk(chunkX, chunkZ);
+        if (chunk == null) continue;
+        // One snapshot per chunk so the copy is consistent even while it is being edited
+        ChunkSnapshot snapshot = chunk.snapshot();
+        int x0 = Math.max(box.minX, chunkX * CHUNK_SIZE) - chunkX * CHUNK_SIZE;
+        int x1 = Math.min(box.maxX, chunkX * CHUNK_SIZE + CHUNK_SIZE - 1) - chunkX * CHUNK_SIZE;
+        int z0 = Math.max(box.minZ, chunkZ * CHUNK_SIZE) - chunkZ * CHUNK_SIZE;
+        int z1 = Math.min(box.maxZ, chunkZ * CHUNK_SIZE + CHUNK_SIZE - 1) - chunkZ * CHUNK_SIZE;
+        for (int y = minY; y <= maxY; y++) {
+          short[] section = snapshot.getSection(y >> 4);
+          if (section == null) continue;
+          for (int z = z0; z <= z1; z++) {
+            int row = (((y & 15) * CHUNK_SIZE) + z) * CHUNK_SIZE;
+            int target = clipboard.index(chunkX * CHUNK_SIZE + x0 - box.minX, y - box.minY, chunkZ * CHUNK_SIZE + z - box.minZ);
+            System.arraycopy(section, row + x0, out, target, x1 - x0 + 1);
           }
         }
       }
     }
+    Metrics.recordTime("world.copy", System.nanoTime() - start);
+    return clipboard;
+  }
+
+  /** Writes a clipboard with its minimum corner at (x, y, z). Returns the number of blocks written. */
+  public long paste(Clipboard clipboard, int x, int y, int z) {
+    short[] in = clipboard.blocks();
+    for (short type : in) {
+      checkBlockType(type);
+    }
+    AABB box = new AABB(x, y, z, x + clipboard.getSizeX() - 1, y + clipboard.getSizeY() - 1, z + clipboard.getSizeZ() - 1);
+    return editRegion(box, (edit, sectionY, x0, x1, y0, y1, z0, z1, baseX, baseY, baseZ) -> {
+      short[] section = edit.getSection(sectionY);
+      int length = x1 - x0 + 1;
+      int top = -1;
+      for (int ly = y0; ly <= y1; ly++) {
+        for (int lz = z0; lz <= z1; lz++) {
+          int row = (ly * CHUNK_SIZE + lz) * CHUNK_SIZE;
+          int source = clipboard.index(baseX + x0 - x, baseY + ly - y, baseZ + lz - z);
+          // Only copy the section once a row actually differs from what is there
+          if (!edit.isWritable(sectionY)) {
+            if (section == null ? !hasBlocks(in, source, length)
+                : Arrays.equals(in, source, source + length, section, row + x0, row + x0 + length)) {
+              continue;
+            }
+            section = edit.writableSection(sectionY);
+          }
+          System.arraycopy(in, source, section, row + x0, length);
+          for (int i = 0; i < length && top < ly; i++) {
+            if (in[source + i] != BlockRegistry.AIR) top = ly;
+          }
+        }
+      }
+      if (top >= 0) edit.raiseHeight(baseY + top + 1);
+      return (long) length * (y1 - y0 + 1) * (z1 - z0 + 1);
+    });
+  }
+
+  private static boolean hasBlocks(short[] blocks, int from, int length) {
+    for (int i = from; i < from + length; i++) {
+      if (blocks[i] != BlockRegistry.AIR) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Runs {@code work} on every loaded section the box overlaps, with one {@link Chunk.Edit}
+   * per chunk. Each chunk publishes one new snapshot and is remeshed once no matter how
+   * many blocks changed, and its neighbours are remeshed only if the box reaches its edge.
+   * The {@link BlockChangeListener} hears about each chunk that changed, and block updates
+   * are then scheduled for the box and the blocks around it.
+   */
+  private long editRegion(AABB box, SectionWork work) {
+    int minY = Math.max(0, box.minY);
+    int maxY = Math.min(WORLD_HEIGHT - 1, box.maxY);
+    if (minY > maxY) return 0;
+
+    long start = System.nanoTime();
+    long total = 0;
+    BlockChangeListener listener = blockChangeListener;
+    for (int chunkX = box.minX >> 4; chunkX <= box.maxX >> 4; chunkX++) {
+      for (int chunkZ = box.minZ >> 4; chunkZ <= box.maxZ >> 4; chunkZ++) {
+        Chunk chunk = getChunk(chunkX, chunkZ);
+        if (chunk == null) continue;
+        int baseX = chunkX * CHUNK_SIZE;
+        int baseZ = chunkZ * CHUNK_SIZE;
+        int x0 = Math.max(box.minX, baseX) - baseX;
+        int x1 = Math.min(box.maxX, baseX + CHUNK_SIZE - 1) - baseX;
+        int z0 = Math.max(box.minZ, baseZ) - baseZ;
+        int z1 = Math.min(box.maxZ, baseZ + CHUNK_SIZE - 1) - baseZ;
+
+        Chunk.Edit edit = chunk.edit();
+        try {
+          for (int sectionY = minY >> 4; sectionY <= maxY >> 4; sectionY++) {
+            int baseY = sectionY * CHUNK_SIZE;
+            int y0 = Math.max(minY, baseY) - baseY;
+            int y1 = Math.min(maxY, baseY + CHUNK_SIZE - 1) - baseY;
+            total += work.apply(edit, sectionY, x0, x1, y0, y1, z0, z1, baseX, baseY, baseZ);
+          }
+        } finally {
+          edit.commit();
+        }
+
+        if (edit.getChangedSections() == 0) continue;
+        if (x0 == 0 || x1 == CHUNK_SIZE - 1 || z0 == 0 || z1 == CHUNK_SIZE - 1) {
+          markNeighboursDirty(chunk);
+        }
+        if (listener != null) {
+          listener.chunkChanged(chunkX, chunkZ);
+        }
+      }
+    }
+    if (total > 0) {
+      blockUpdates.regionChanged(box);
+    }
+    Metrics.recordTime("world.bulkEdit", System.nanoTime() - start);
+    Metrics.add("world.bulkEdit.blocks", total);
+    return total;
+  }
+
+  /**
+   * Collision test for an upright box standing at (x, y, z), shared by the player and entities.
+   * Samples the four corners at feet and head level, just inside the box vertically.
+   */
+  public boolean isBoxBlocked(float x, float y, float z, float halfWidth, float height) {
+    int feetY = (int) Math.floor(y + 0.1f);
+    int headY = (int) Math.floor(y + height - 0.1f);
+    Chunk loaded = null;
+    ChunkSnapshot chunk = null;
+    int cachedX = Integer.MIN_VALUE, cachedZ = Integer.MIN_VALUE;
+    for (int i = 0; i < 4; i++) {
+      int blockX = (int) Math.floor(x + ((i & 1) == 0 ? -halfWidth : halfWidth));
+      int blockZ = (int) Math.floor(z + ((i & 2) == 0 ? -halfWidth : halfWidth));
+      // Corners usually share a chunk, so only look it up when the column crosses into another
+      if (blockX >> 4 != cachedX || blockZ >> 4 != cachedZ) {
+        cachedX = blockX >> 4;
+        cachedZ = blockZ >> 4;
+        loaded = nearby(loaded, cachedX, cachedZ);
+        chunk = loaded == null ? null : loaded.snapshot();
+      }
+      if (chunk == null) continue;
+      if (chunk.isBlockAt(blockX & 15, feetY, blockZ & 15) || chunk.isBlockAt(blockX & 15, headY, blockZ & 15)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** One above the highest solid block in the column, or 0 if there is none or it is not loaded. */
+  public int getSurfaceHeight(int x, int z) {
+    for (int y = WORLD_HEIGHT - 1; y >= 0; y--) {
+      if (isBlockAt(x, y, z)) return y + 1;
+    }
+    return 0;
   }
 
   public boolean isBlockAt(int x, int y, int z) {
-    if (y < 0 || y > 255) return false;
+    if (y < 0 || y >= WORLD_HEIGHT) return false;
 
     int chunkX = x >> 4;
     int chunkZ = z >> 4;
-    ChunkPos pos = new ChunkPos(chunkX, chunkZ);
-    Chunk chunk = chunks.get(pos);
+    Chunk chunk = chunks.get(chunkX, chunkZ);
 
     if (chunk == null) return false;
 
@@ -89,19 +727,156 @@ public class World {
     return chunk.isBlockAt(localX, y, localZ);
   }
 
+  /** Casts a ray from the camera along its view direction. */
+  public boolean raycast(Camera camera, float maxDistance, RaycastHit hit) {
+    Vector3f origin = camera.getPosition();
+    Vector3f direction = camera.getFront();
+    hit.chunk = null;
+    Metrics.increment("raycast.rays");
+    return castRay(origin.x, origin.y, origin.z, direction.x, direction.y, direction.z, maxDistance, hit);
+  }
+
+  /**
+   * Finds the first solid block along a ray with an Amanatides-Woo voxel traversal.
+   * The direction does not need to be normalised; distances are in blocks either way.
+   * Returns false and leaves {@code hit.hit} unset if nothing is hit within maxDistance,
+   * which is capped at {@link #MAX_RAY_DISTANCE}. Rays also end where they leave the
+   * loaded chunks.
+   */
+  public boolean raycast(float ox, float oy, float oz, float dx, float dy, float dz,
+                         float maxDistance, RaycastHit hit) {
+    hit.chunk = null;
+    Metrics.increment("raycast.rays");
+    return castRay(ox, oy, oz, dx, dy, dz, maxDistance, hit);
+  }
+
+  /**
+   * Batched line-of-sight checks. {@code segments} holds 6 floats per query (from x, y, z,
+   * to x, y, z); {@code visible[i]} is set when nothing solid lies between the two points.
+   * The chunk the previous ray ended in is reused, so clustered queries rarely touch the map.
+   * Returns the number of visible pairs.
+   */
+  public int lineOfSight(float[] segments, int count, boolean[] visible, RaycastHit scratch) {
+    scratch.chunk = null;
+    Metrics.add("raycast.rays", count);
+    int visibleCount = 0;
+    for (int i = 0; i < count; i++) {
+      int o = i * 6;
+      float dx = segments[o + 3] - segments[o];
+      float dy = segments[o + 4] - segments[o + 1];
+      float dz = segments[o + 5] - segments[o + 2];
+      float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+      boolean blocked = length > 0 && castRay(segments[o], segments[o + 1], segments[o + 2], dx, dy, dz, length, scratch);
+      visible[i] = !blocked;
+      if (!blocked) visibleCount++;
+    }
+    return visibleCount;
+  }
+
+  private boolean castRay(float ox, float oy, float oz, float dx, float dy, float dz,
+                          float maxDistance, RaycastHit hit) {
+    float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    // Also rejects NaN and infinite input, which would never finish stepping
+    if (!(length > 0) || !Float.isFinite(length) || !(maxDistance >= 0)
+        || !Float.isFinite(ox) || !Float.isFinite(oy) || !Float.isFinite(oz)) {
+      hit.miss(0);
+      return false;
+    }
+    maxDistance = Math.min(maxDistance, MAX_RAY_DISTANCE);
+    dx /= length;
+    dy /= length;
+    dz /= length;
+
+    int x = (int) Math.floor(ox);
+    int y = (int) Math.floor(oy);
+    int z = (int) Math.floor(oz);
+    int stepX = dx > 0 ? 1 : dx < 0 ? -1 : 0;
+    int stepY = dy > 0 ? 1 : dy < 0 ? -1 : 0;
+    int stepZ = dz > 0 ? 1 : dz < 0 ? -1 : 0;
+
+    // Distance along the ray to cross one whole block, and to reach the next boundary, per axis
+    float deltaX = stepX != 0 ? Math.abs(1 / dx) : Float.POSITIVE_INFINITY;
+    float deltaY = stepY != 0 ? Math.abs(1 / dy) : Float.POSITIVE_INFINITY;
+    float deltaZ = stepZ != 0 ? Math.abs(1 / dz) : Float.POSITIVE_INFINITY;
+    float maxX = stepX > 0 ? (x + 1 - ox) * deltaX : stepX < 0 ? (ox - x) * deltaX : Float.POSITIVE_INFINITY;
+    float maxY = stepY > 0 ? (y + 1 - oy) * deltaY : stepY < 0 ? (oy - y) * deltaY : Float.POSITIVE_INFINITY;
+    float maxZ = stepZ > 0 ? (z + 1 - oz) * deltaZ : stepZ < 0 ? (oz - z) * deltaZ : Float.POSITIVE_INFINITY;
+
+    Chunk chunk = hit.chunk;
+    int face = -1;
+    float distance = 0;
+
+    while (distance <= maxDistance) {
+      if (y >= 0 && y < WORLD_HEIGHT) {
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        // Only go to the map when the ray steps into a different chunk
+        if (chunk == null || chunk.getChunkX() != chunkX || chunk.getChunkZ() != chunkZ) {
+          chunk = nearby(chunk, chunkX, chunkZ);
+        }
+        // The loaded area is a square around the player, so a ray that leaves it does not come back
+        if (chunk == null) break;
+        int type = chunk.getBlockType(x & 0xF, y, z & 0xF);
+        if (BlockRegistry.isSolid(type)) {
+          hit.hit = true;
+          hit.x = x;
+          hit.y = y;
+          hit.z = z;
+          hit.blockType = type;
+          hit.face = face;
+          hit.distance = distance;
+          hit.chunk = chunk;
+          return true;
+        }
+      } else if ((y < 0 && stepY <= 0) || (y >= WORLD_HEIGHT && stepY >= 0)) {
+        // Outside the world and not heading back in
+        break;
+      }
+
+      // Step into the neighbouring block across the nearest boundary
+      if (maxX < maxY && maxX < maxZ) {
+        x += stepX;
+        distance = maxX;
+        maxX += deltaX;
+        face = stepX > 0 ? 1 : 0;
+      } else if (maxY < maxZ) {
+        y += stepY;
+        distance = maxY;
+        maxY += deltaY;
+        face = stepY > 0 ? 3 : 2;
+      } else {
+        z += stepZ;
+        distance = maxZ;
+        maxZ += deltaZ;
+        face = stepZ > 0 ? 5 : 4;
+      }
+    }
+
+    hit.chunk = chunk;
+    hit.miss(maxDistance);
+    return false;
+  }
+
   public void render(Vector3f playerPosition) {
     // Only render chunks within render distance
     int playerChunkX = (int)Math.floor(playerPosition.x) >> 4;
     int playerChunkZ = (int)Math.floor(playerPosition.z) >> 4;
-    System.out.println("Rendering chunks: " + chunks.size());
-    // Batch similar blocks together for fewer draw calls
-    Map<Integer, Integer> blockTypeCount = new HashMap<>();
+    Metrics.setGauge("render.chunksLoaded", chunks.size());
+    int program = glGetInteger(GL_CURRENT_PROGRAM);
+    int modelLoc = glGetUniformLocation(program, "model");
 
-    for (int x = playerChunkX - RENDER_DISTANCE; x <= playerChunkX + RENDER_DISTANCE; x++) {
-      for (int z = playerChunkZ - RENDER_DISTANCE; z <= playerChunkZ + RENDER_DISTANCE; z++) {
-        Chunk chunk = chunks.get(new ChunkPos(x, z));
+    // GL objects can only be deleted on this thread
+    Chunk unloaded;
+    while ((unloaded = unloadedChunks.poll()) != null) {
+      unloaded.cleanup();
+    }
+
+    int distance = renderDistance;
+    for (int x = playerChunkX - distance; x <= playerChunkX + distance; x++) {
+      for (int z = playerChunkZ - distance; z <= playerChunkZ + distance; z++) {
+        Chunk chunk = chunks.get(x, z);
         if (chunk != null) {
-          chunk.render(x, z, playerPosition, blockTypeCount);
+          chunk.render(this, mesher, playerPosition, modelLoc);
         }
       }
     }
@@ -117,5 +892,13 @@ public class World {
     } catch (InterruptedException e) {
       chunkLoader.shutdownNow();
     }
+
+    if (storage != null) {
+      try {
+        storage.close();
+      } catch (IOException e) {
+        System.err.println("Error closing world storage: " + e.getMessage());
+      }
+    }
   }
 }
\ No newline at end of file
@@ -0,0 +1,281 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Whole-world save in a single file, for backups of a running server and for test worlds.
+ *
+ * <pre>
+ * int   magic, int format version
+ * per chunk: deflated {@link ChunkCodec} bytes, in no particular order
+ * index: int count, then per chunk long ChunkPos key, long offset, int length, int CRC32
+ * footer: long index offset, int index CRC32, int magic
+ * </pre>
+ *
+ * Writing reads each chunk through one {@link ChunkSnapshot}, so the world keeps running and
+ * every chunk is saved consistently as of some moment during the write. Worker threads
+ * encode and compress while the calling thread appends to the file; a bounded queue between
+ * them caps how much compressed data waits in memory. The file is written next to its
+ * destination and moved into place at the end, so a failed write leaves any older snapshot.
+ *
+ * The index at the end lets {@link Reader} load any single chunk with one read.
+ */
+public final class WorldSnapshot {
+  private static final int MAGIC = 0x4D43534E; // "MCSN"
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 2 * Integer.BYTES;
+  private static final int INDEX_ENTRY_BYTES = 2 * Long.BYTES + 2 * Integer.BYTES;
+  private static final int FOOTER_BYTES = Long.BYTES + 2 * Integer.BYTES;
+
+  private WorldSnapshot() {
+  }
+
+  // A compressed chunk on its way from a worker to the file writer; each worker ends with END
+  private static final class Blob {
+    static final Blob END = new Blob(null, null);
+
+    final Chunk chunk;
+    final byte[] data;
+
+    Blob(Chunk chunk, byte[] data) {
+      this.chunk = chunk;
+      this.data = data;
+    }
+  }
+
+  /** Writes every loaded chunk of the world to {@code file}. Returns the number of chunks written. */
+  public static int write(World world, Path file, int threads) throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    List<Chunk> chunks = new ArrayList<>(world.getLoadedChunks());
+    BlockingQueue<Blob> queue = new ArrayBlockingQueue<>(threads * 4);
+    AtomicInteger next = new AtomicInteger();
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<?>> workers = new ArrayList<>();
+
+    for (int t = 0; t < threads; t++) {
+      workers.add(pool.submit(() -> {
+        try {
+          int i;
+          while ((i = next.getAndIncrement()) < chunks.size()) {
+            Chunk chunk = chunks.get(i);
+            queue.put(new Blob(chunk, ChunkCodec.encodeCompressed(chunk)));
+          }
+        } finally {
+          queue.put(Blob.END);
+        }
+        return null;
+      }));
+    }
+
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    long bytes;
+    // Never leave a half written .tmp behind; the previous snapshot at file stays intact
+    try {
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+        writeFully(channel, ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip());
+
+        ByteBuffer index = ByteBuffer.allocate(Integer.BYTES + chunks.size() * INDEX_ENTRY_BYTES);
+        index.putInt(0);
+        long offset = HEADER_BYTES;
+        int count = 0;
+        CRC32 crc = new CRC32();
+        for (int finished = 0; finished < threads; ) {
+          Blob blob = queue.take();
+          if (blob == Blob.END) {
+            finished++;
+            continue;
+          }
+          writeFully(channel, ByteBuffer.wrap(blob.data));
+          crc.reset();
+          crc.update(blob.data);
+          index.putLong(ChunkPos.asLong(blob.chunk.getChunkX(), blob.chunk.getChunkZ()))
+              .putLong(offset).putInt(blob.data.length).putInt((int) crc.getValue());
+          offset += blob.data.length;
+          count++;
+        }
+        for (Future<?> worker : workers) {
+          worker.get();
+        }
+
+        index.putInt(0, count).flip();
+        crc.reset();
+        crc.update(index.duplicate());
+        writeFully(channel, index);
+        writeFully(channel, ByteBuffer.allocate(FOOTER_BYTES)
+            .putLong(offset).putInt((int) crc.getValue()).putInt(MAGIC).flip());
+        bytes = channel.position();
+      } catch (ExecutionException e) {
+        throw new IOException("Error compressing chunks", e.getCause());
+      } finally {
+        pool.shutdownNow();
+      }
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | InterruptedException | RuntimeException e) {
+      try {
+        Files.deleteIfExists(temporary);
+      } catch (IOException deleteError) {
+        e.addSuppressed(deleteError);
+      }
+      throw e;
+    }
+
+    report("Saved", chunks.size(), bytes, System.nanoTime() - start);
+    Metrics.recordTime("snapshot.write", System.nanoTime() - start);
+    return chunks.size();
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static void report(String action, int chunks, long bytes, long nanos) {
+    double seconds = nanos / 1e9;
+    System.out.printf("%s snapshot of %d chunks (%.1f MB) in %.0f ms: %.1f MB/s, %.0f chunks/s%n",
+        action, chunks, bytes / 1e6, seconds * 1000, bytes / 1e6 / seconds, chunks / seconds);
+  }
+
+  /** Random access to the chunks of a snapshot file. Safe to use from several threads. */
+  public static final class Reader implements AutoCloseable {
+    private final FileChannel channel;
+    private final long size;
+    // Sorted by key so lookups are a binary search
+    private final long[] keys;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final int[] checksums;
+
+    public Reader(Path file) throws IOException {
+      channel = FileChannel.open(file, StandardOpenOption.READ);
+      try {
+        size = channel.size();
+        ByteBuffer footer = read(size - FOOTER_BYTES, FOOTER_BYTES);
+        long indexOffset = footer.getLong();
+        int indexCrc = footer.getInt();
+        if (footer.getInt() != MAGIC || read(0, HEADER_BYTES).getInt() != MAGIC) {
+          throw new IOException(file + " is not a world snapshot");
+        }
+
+        ByteBuffer index = read(indexOffset, (int) (size - FOOTER_BYTES - indexOffset));
+        CRC32 crc = new CRC32();
+        crc.update(index.duplicate());
+        if ((int) crc.getValue() != indexCrc) {
+          throw new IOException("Corrupt index in " + file);
+        }
+
+        int count = index.getInt();
+        keys = new long[count];
+        for (int i = 0; i < count; i++) {
+          keys[i] = index.getLong(Integer.BYTES + i * INDEX_ENTRY_BYTES);
+        }
+        Arrays.sort(keys);
+        offsets = new long[count];
+        lengths = new int[count];
+        checksums = new int[count];
+        // Keys are unique, so each entry's sorted position is found by searching for its key
+        for (int i = 0; i < count; i++) {
+          int at = Arrays.binarySearch(keys, index.getLong());
+          offsets[at] = index.getLong();
+          lengths[at] = index.getInt();
+          checksums[at] = index.getInt();
+        }
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+    }
+
+    public int size() {
+      return keys.length;
+    }
+
+    public boolean contains(int chunkX, int chunkZ) {
+      return Arrays.binarySearch(keys, ChunkPos.asLong(chunkX, chunkZ)) >= 0;
+    }
+
+    /** Reads one chunk, or returns null if the snapshot does not have it. */
+    public Chunk load(int chunkX, int chunkZ) throws IOException {
+      int i = Arrays.binarySearch(keys, ChunkPos.asLong(chunkX, chunkZ));
+      return i < 0 ? null : load(i);
+    }
+
+    private Chunk load(int i) throws IOException {
+      ByteBuffer data = read(offsets[i], lengths[i]);
+      CRC32 crc = new CRC32();
+      crc.update(data.array(), 0, lengths[i]);
+      if ((int) crc.getValue() != checksums[i]) {
+        throw new IOException("Checksum mismatch for chunk " + ChunkPos.getX(keys[i]) + "," + ChunkPos.getZ(keys[i]));
+      }
+      return ChunkCodec.decodeCompressed(data.array(), 0, lengths[i]);
+    }
+
+    /**
+     * Loads every chunk on {@code threads} threads and hands each to {@code consumer}, from
+     * those threads. Only one chunk per thread is in memory apart from what the consumer keeps.
+     */
+    public void loadAll(Consumer<Chunk> consumer, int threads) throws IOException, InterruptedException {
+      long start = System.nanoTime();
+      AtomicInteger next = new AtomicInteger();
+      ExecutorService pool = Executors.newFixedThreadPool(threads);
+      List<Future<?>> workers = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        workers.add(pool.submit(() -> {
+          int i;
+          while ((i = next.getAndIncrement()) < keys.length) {
+            consumer.accept(load(i));
+          }
+          return null;
+        }));
+      }
+      try {
+        for (Future<?> worker : workers) {
+          worker.get();
+        }
+      } catch (ExecutionException e) {
+        throw new IOException("Error loading snapshot", e.getCause());
+      } finally {
+        pool.shutdownNow();
+      }
+      report("Loaded", keys.length, size, System.nanoTime() - start);
+      Metrics.recordTime("snapshot.load", System.nanoTime() - start);
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+      if (position < 0 || length < 0 || position + length > size) {
+        throw new IOException("Snapshot is truncated");
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(length);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, position + buffer.position()) < 0) {
+          throw new IOException("Snapshot is truncated");
+        }
+      }
+      return buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+}
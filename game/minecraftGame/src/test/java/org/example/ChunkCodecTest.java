@@ -0,0 +1,66 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class ChunkCodecTest {
+  // Offsets into an encoding of one section: coordinates, mask, then the section's palette
+  private static final int PALETTE_SIZE = 10;
+  private static final int FIRST_ENTRY = 12;
+  private static final int FIRST_INDICES = 19;
+
+  // Section 0 with air, stone and dirt: a three entry palette at two bits per block
+  private static short[] threeTypes() {
+    short[] blocks = new short[16 * 16 * 16];
+    for (int i = 0; i < blocks.length; i++) {
+      blocks[i] = (short) (i % 3 == 0 ? BlockRegistry.AIR : i % 3 == 1 ? BlockRegistry.STONE : BlockRegistry.DIRT);
+    }
+    return blocks;
+  }
+
+  @Test
+  void roundTrip() throws IOException {
+    short[] blocks = threeTypes();
+    ByteBuffer in = ByteBuffer.wrap(ChunkCodec.encode(3, -7, blocks));
+    assertEquals(3, in.getInt());
+    assertEquals(-7, in.getInt());
+    assertArrayEquals(blocks, ChunkCodec.decodeBlocks(in));
+  }
+
+  @Test
+  void rejectsUnknownBlockIds() {
+    byte[] data = ChunkCodec.encode(0, 0, threeTypes());
+    ByteBuffer.wrap(data).putShort(FIRST_ENTRY, (short) BlockRegistry.size());
+    assertThrows(IOException.class, () -> ChunkCodec.decode(ByteBuffer.wrap(data)));
+    ByteBuffer.wrap(data).putShort(FIRST_ENTRY, (short) -1);
+    assertThrows(IOException.class, () -> ChunkCodec.decode(ByteBuffer.wrap(data)));
+  }
+
+  @Test
+  void rejectsIndicesPastThePalette() {
+    byte[] data = ChunkCodec.encode(0, 0, threeTypes());
+    // Index 3 in every slot of the first long, with only three palette entries
+    ByteBuffer.wrap(data).putLong(FIRST_INDICES, -1L);
+    assertThrows(IOException.class, () -> ChunkCodec.decode(ByteBuffer.wrap(data)));
+  }
+
+  @Test
+  void rejectsEmptyPalette() {
+    byte[] data = ChunkCodec.encode(0, 0, threeTypes());
+    ByteBuffer.wrap(data).putShort(PALETTE_SIZE, (short) 0);
+    assertThrows(IOException.class, () -> ChunkCodec.decode(ByteBuffer.wrap(data)));
+  }
+
+  @Test
+  void rejectsTruncatedData() {
+    byte[] data = ChunkCodec.encode(0, 0, threeTypes());
+    byte[] truncated = Arrays.copyOf(data, data.length / 2);
+    assertThrows(IOException.class, () -> ChunkCodec.decode(ByteBuffer.wrap(truncated)));
+  }
+}
@@ -0,0 +1,108 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+class ChunkMapTest {
+  private static final int RADIUS = 8;
+  private static final long CHURN_NANOS = 500_000_000L;
+
+  private static List<Chunk> fillSquare(ChunkMap map) {
+    List<Chunk> chunks = new ArrayList<>();
+    for (int x = -RADIUS; x <= RADIUS; x++) {
+      for (int z = -RADIUS; z <= RADIUS; z++) {
+        Chunk chunk = new Chunk(x, z, new short[0]);
+        chunks.add(chunk);
+        map.putIfAbsent(chunk);
+      }
+    }
+    return chunks;
+  }
+
+  // Every link must point at the chunk the map returns for that position, or be null with it
+  private static void assertLinksMatch(ChunkMap map, Iterable<Chunk> chunks) {
+    for (Chunk chunk : chunks) {
+      for (int dz = -1; dz <= 1; dz++) {
+        for (int dx = -1; dx <= 1; dx++) {
+          Chunk expected = map.get(chunk.getChunkX() + dx, chunk.getChunkZ() + dz);
+          // A diagonal is only linked through a loaded side chunk
+          if (dx != 0 && dz != 0 && map.get(chunk.getChunkX() + dx, chunk.getChunkZ()) == null
+              && map.get(chunk.getChunkX(), chunk.getChunkZ() + dz) == null) {
+            expected = null;
+          }
+          assertSame(expected, chunk.getNeighbour(dx, dz),
+              "link " + dx + "," + dz + " of chunk " + chunk.getChunkX() + "," + chunk.getChunkZ());
+        }
+      }
+    }
+  }
+
+  @Test
+  void linksMatchMap() {
+    ChunkMap map = new ChunkMap();
+    List<Chunk> chunks = fillSquare(map);
+    assertLinksMatch(map, chunks);
+  }
+
+  @Test
+  void linksFollowRemovalAndReplacement() {
+    ChunkMap map = new ChunkMap();
+    List<Chunk> chunks = fillSquare(map);
+    Random random = new Random(3);
+    for (int i = 0; i < chunks.size() / 2; i++) {
+      Chunk chunk = chunks.get(random.nextInt(chunks.size()));
+      if (random.nextBoolean()) {
+        map.remove(chunk);
+      } else {
+        Chunk replacement = new Chunk(chunk.getChunkX(), chunk.getChunkZ(), new short[0]);
+        map.put(replacement);
+        chunks.set(chunks.indexOf(chunk), replacement);
+      }
+    }
+    assertLinksMatch(map, map.values());
+  }
+
+  // One writer adds and removes chunks outside the square, forcing resizes, while this thread
+  // looks up the square's chunks, which must always be found
+  @Test
+  void readersNeverMissDuringChurn() throws InterruptedException {
+    ChunkMap map = new ChunkMap();
+    List<Chunk> chunks = fillSquare(map);
+    AtomicBoolean running = new AtomicBoolean(true);
+    int offset = RADIUS + 2;
+    Thread writer = new Thread(() -> {
+      Random random = new Random(2);
+      while (running.get()) {
+        int x = offset + random.nextInt(200);
+        int z = random.nextInt(200) - 100;
+        Chunk chunk = map.get(x, z);
+        if (chunk == null) {
+          map.putIfAbsent(new Chunk(x, z, new short[0]));
+        } else {
+          map.remove(chunk);
+        }
+      }
+    }, "writer");
+    writer.start();
+
+    long misses = 0;
+    long end = System.nanoTime() + CHURN_NANOS;
+    try {
+      while (System.nanoTime() < end) {
+        for (Chunk chunk : chunks) {
+          if (map.get(chunk.getChunkX(), chunk.getChunkZ()) != chunk) misses++;
+        }
+      }
+    } finally {
+      running.set(false);
+      writer.join();
+    }
+    assertEquals(0, misses);
+  }
+}
@@ -0,0 +1,97 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class ChunkSnapshotTest {
+  private static final int LOW_LAYER = 10;
+  private static final int HIGH_LAYER = 40;
+
+  @Test
+  void editIsInvisibleUntilCommit() {
+    Chunk chunk = new Chunk(0, 0, new short[0]);
+    ChunkSnapshot before = chunk.snapshot();
+    Chunk.Edit edit = chunk.edit();
+    try {
+      edit.setBlock(1, 2, 3, BlockRegistry.STONE);
+      assertEquals(BlockRegistry.AIR, chunk.getBlockType(1, 2, 3));
+    } finally {
+      edit.commit();
+    }
+    assertEquals(BlockRegistry.STONE, chunk.getBlockType(1, 2, 3));
+    assertEquals(BlockRegistry.AIR, before.getBlockType(1, 2, 3));
+    assertTrue(chunk.snapshot().getVersion() > before.getVersion());
+  }
+
+  /**
+   * Writers set two whole layers in different sections to one type per edit, alternating
+   * stone and dirt; readers must always see both layers uniform and versions never going back.
+   */
+  @Test
+  void concurrentReadersNeverSeeTornEdits() throws InterruptedException {
+    Chunk chunk = new Chunk(0, 0, new short[0]);
+    AtomicBoolean running = new AtomicBoolean(true);
+    AtomicLong reads = new AtomicLong();
+    AtomicLong commits = new AtomicLong();
+    AtomicLong torn = new AtomicLong();
+    List<Thread> threads = new ArrayList<>();
+
+    for (int r = 0; r < 4; r++) {
+      threads.add(new Thread(() -> {
+        long lastVersion = -1;
+        while (running.get()) {
+          ChunkSnapshot snapshot = chunk.snapshot();
+          if (snapshot.getVersion() < lastVersion) torn.incrementAndGet();
+          lastVersion = snapshot.getVersion();
+          int expected = snapshot.getBlockType(0, LOW_LAYER, 0);
+          for (int x = 0; x < World.CHUNK_SIZE; x++) {
+            for (int z = 0; z < World.CHUNK_SIZE; z++) {
+              if (snapshot.getBlockType(x, LOW_LAYER, z) != expected || snapshot.getBlockType(x, HIGH_LAYER, z) != expected) {
+                torn.incrementAndGet();
+              }
+            }
+          }
+          reads.incrementAndGet();
+        }
+      }, "reader-" + r));
+    }
+    for (int w = 0; w < 2; w++) {
+      threads.add(new Thread(() -> {
+        int edits = 0;
+        while (running.get()) {
+          int type = (edits++ & 1) == 0 ? BlockRegistry.STONE : BlockRegistry.DIRT;
+          Chunk.Edit edit = chunk.edit();
+          try {
+            for (int x = 0; x < World.CHUNK_SIZE; x++) {
+              for (int z = 0; z < World.CHUNK_SIZE; z++) {
+                edit.setBlock(x, LOW_LAYER, z, type);
+                edit.setBlock(x, HIGH_LAYER, z, type);
+              }
+            }
+          } finally {
+            edit.commit();
+          }
+          commits.incrementAndGet();
+        }
+      }, "writer-" + w));
+    }
+
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    Thread.sleep(1000);
+    running.set(false);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertTrue(reads.get() > 0 && commits.get() > 0, reads + " reads, " + commits + " commits");
+    assertEquals(0, torn.get(), "torn views in " + reads + " reads");
+  }
+}
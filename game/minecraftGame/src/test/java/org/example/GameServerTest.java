@@ -0,0 +1,74 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class GameServerTest {
+  private World world;
+  private GameServer server;
+  private Thread serverThread;
+
+  @BeforeEach
+  void start() throws IOException {
+    world = new World(1);
+    server = new GameServer(world, 0);
+    serverThread = new Thread(server, "server");
+    serverThread.start();
+  }
+
+  @AfterEach
+  void stop() throws InterruptedException {
+    server.stop();
+    serverThread.join();
+    world.cleanup();
+  }
+
+  @Test
+  void nonFinitePositionDisconnects() throws IOException {
+    try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+      socket.setSoTimeout(5000);
+      OutputStream out = socket.getOutputStream();
+      ByteBuffer hello = Protocol.frame(Protocol.HELLO, Integer.BYTES);
+      hello.putInt(2).flip();
+      out.write(hello.array(), 0, hello.limit());
+      ByteBuffer move = Protocol.frame(Protocol.MOVE, 3 * Float.BYTES);
+      move.putFloat(Float.NaN).putFloat(70).putFloat(Float.POSITIVE_INFINITY).flip();
+      out.write(move.array(), 0, move.limit());
+      out.flush();
+
+      // The server may send the welcome and some chunks first, then it has to close
+      InputStream in = socket.getInputStream();
+      byte[] buffer = new byte[64 * 1024];
+      try {
+        while (in.read(buffer) >= 0) {
+          // drain
+        }
+      } catch (SocketTimeoutException e) {
+        throw new AssertionError("Server kept the connection open after a NaN position", e);
+      } catch (IOException e) {
+        // Reset by the server also counts as disconnected
+      }
+    }
+  }
+
+  @Test
+  void unwatchedChunksAreUnloaded() throws InterruptedException {
+    // Nobody is connected, so once a second the server drops the spawn chunks it loaded
+    assertNotNull(world.getChunk(0, 0));
+    long deadline = System.nanoTime() + 5_000_000_000L;
+    while (world.getChunk(0, 0) != null && System.nanoTime() < deadline) {
+      Thread.sleep(50);
+    }
+    assertNull(world.getChunk(0, 0));
+  }
+}
@@ -0,0 +1,35 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RegionStorageTest {
+  @TempDir
+  Path directory;
+
+  @Test
+  void savedChunksLoadBack() throws IOException {
+    Chunk chunk = new Chunk(33, -2, new short[0]);
+    chunk.setBlock(4, 5, 6, BlockRegistry.STONE);
+    try (RegionStorage storage = new RegionStorage(directory, "heightmap")) {
+      storage.save(chunk);
+      assertNull(storage.load(0, 0));
+    }
+    try (RegionStorage storage = new RegionStorage(directory, "heightmap")) {
+      assertEquals(BlockRegistry.STONE, storage.load(33, -2).getBlockType(4, 5, 6));
+    }
+  }
+
+  @Test
+  void refusesAnotherTerrainKind() throws IOException {
+    new RegionStorage(directory, "density").close();
+    assertThrows(IOException.class, () -> new RegionStorage(directory, "heightmap"));
+    new RegionStorage(directory, "density").close();
+  }
+}
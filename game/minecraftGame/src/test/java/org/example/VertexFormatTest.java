@@ -0,0 +1,59 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/** Packs every value each {@link VertexFormat} field can hold and checks it decodes unchanged. */
+class VertexFormatTest {
+  @Test
+  void positionRoundTrip() {
+    for (int x = 0; x <= World.CHUNK_SIZE; x++) {
+      for (int z = 0; z <= World.CHUNK_SIZE; z++) {
+        for (int y = 0; y <= World.WORLD_HEIGHT; y++) {
+          for (int face = 0; face < 6; face++) {
+            for (int ao = 0; ao <= 3; ao++) {
+              int position = VertexFormat.packPosition(x, y, z, face, ao);
+              // One message per failure only; building it for every encoding is slow
+              if (VertexFormat.x(position) != x || VertexFormat.y(position) != y || VertexFormat.z(position) != z
+                  || VertexFormat.face(position) != face || VertexFormat.ao(position) != ao) {
+                assertEquals(x + "," + y + "," + z + " face " + face + " ao " + ao,
+                    VertexFormat.x(position) + "," + VertexFormat.y(position) + "," + VertexFormat.z(position)
+                        + " face " + VertexFormat.face(position) + " ao " + VertexFormat.ao(position),
+                    "word 0x" + Integer.toHexString(position));
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void dataRoundTrip() {
+    for (int block = 0; block <= VertexFormat.MAX_BLOCK_ID; block++) {
+      for (int sky = 0; sky <= VertexFormat.MAX_LIGHT; sky++) {
+        for (int light = 0; light <= VertexFormat.MAX_LIGHT; light++) {
+          int data = VertexFormat.packData(block, sky, light);
+          if (VertexFormat.blockId(data) != block || VertexFormat.skyLight(data) != sky
+              || VertexFormat.blockLight(data) != light) {
+            assertEquals(block + " sky " + sky + " light " + light,
+                VertexFormat.blockId(data) + " sky " + VertexFormat.skyLight(data) + " light " + VertexFormat.blockLight(data),
+                "word 0x" + Integer.toHexString(data));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void everyBlockIdFits() {
+    assertTrue(BlockRegistry.size() - 1 <= VertexFormat.MAX_BLOCK_ID);
+  }
+
+  @Test
+  void vertexIsAtMostEightBytes() {
+    assertTrue(VertexFormat.VERTEX_BYTES <= 8, VertexFormat.VERTEX_BYTES + " bytes per vertex");
+  }
+}
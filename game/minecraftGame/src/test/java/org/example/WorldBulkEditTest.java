@@ -0,0 +1,127 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class WorldBulkEditTest {
+  private World world;
+  private Chunk chunk;
+
+  @BeforeEach
+  void loadSpawn() {
+    world = new World(1);
+    world.loadArea(0, 0, 1);
+    chunk = world.getChunk(0, 0);
+  }
+
+  @AfterEach
+  void cleanup() {
+    world.cleanup();
+  }
+
+  // Records every report as a string, blocks as "block x,y,z" and chunks as "chunk x,z"
+  private List<String> listen() {
+    List<String> reports = new ArrayList<>();
+    world.setBlockChangeListener(new World.BlockChangeListener() {
+      @Override
+      public void blockChanged(int x, int y, int z, int type) {
+        reports.add("block " + x + "," + y + "," + z);
+      }
+
+      @Override
+      public void chunkChanged(int chunkX, int chunkZ) {
+        reports.add("chunk " + chunkX + "," + chunkZ);
+      }
+    });
+    return reports;
+  }
+
+  @Test
+  void fillingAirOverAirLeavesChunkUnmodified() {
+    long version = chunk.snapshot().getVersion();
+    int top = chunk.getHeight();
+    world.fill(new AABB(0, top, 0, 15, World.WORLD_HEIGHT - 1, 15), BlockRegistry.AIR);
+    assertEquals(version, chunk.snapshot().getVersion());
+    assertFalse(chunk.isModified());
+  }
+
+  @Test
+  void fillingWithSameTypeLeavesChunkUnmodified() {
+    world.fill(new AABB(0, 0, 0, 15, 0, 15), chunk.getBlockType(0, 0, 0) == BlockRegistry.AIR
+        ? BlockRegistry.STONE : chunk.getBlockType(0, 0, 0));
+    long version = chunk.snapshot().getVersion();
+    world.fill(new AABB(0, 0, 0, 15, 0, 15), chunk.getBlockType(0, 0, 0));
+    assertEquals(version, chunk.snapshot().getVersion());
+  }
+
+  @Test
+  void pastingWhatIsThereLeavesChunkUnmodified() {
+    AABB box = new AABB(0, 0, 0, 15, World.WORLD_HEIGHT - 1, 15);
+    Clipboard clipboard = world.copy(box);
+    world.paste(clipboard, 0, 0, 0);
+    assertFalse(chunk.isModified());
+  }
+
+  @Test
+  void fillChangesBlocks() {
+    world.fill(new AABB(2, 200, 2, 4, 201, 4), BlockRegistry.STONE);
+    assertEquals(BlockRegistry.STONE, world.getBlockType(3, 201, 3));
+    assertTrue(chunk.getHeight() >= 202);
+    assertTrue(chunk.isModified());
+  }
+
+  @Test
+  void unknownBlockTypesAreRejected() {
+    AABB box = new AABB(0, 0, 0, 1, 1, 1);
+    assertThrows(IllegalArgumentException.class, () -> world.fill(box, -1));
+    assertThrows(IllegalArgumentException.class, () -> world.fill(box, BlockRegistry.size()));
+    assertThrows(IllegalArgumentException.class, () -> world.replace(box, BlockRegistry.STONE, BlockRegistry.size()));
+    assertThrows(IllegalArgumentException.class, () -> world.setBlock(0, 200, 0, BlockRegistry.size()));
+  }
+
+  @Test
+  void bulkEditsReportEachChangedChunk() {
+    List<String> reports = listen();
+    world.fill(new AABB(8, 200, 0, 23, 200, 0), BlockRegistry.STONE);
+    assertEquals(List.of("chunk 0,0", "chunk 1,0"), reports);
+
+    reports.clear();
+    world.fill(new AABB(8, 200, 0, 23, 200, 0), BlockRegistry.STONE);
+    world.replace(new AABB(0, 210, 0, 15, 210, 15), BlockRegistry.STONE, BlockRegistry.DIRT);
+    assertEquals(List.of(), reports);
+  }
+
+  @Test
+  void settingSameTypeReportsNothing() {
+    world.setBlock(3, 200, 3, BlockRegistry.STONE);
+    List<String> reports = listen();
+    assertFalse(world.setBlock(3, 200, 3, BlockRegistry.STONE));
+    assertEquals(List.of(), reports);
+    assertTrue(world.setBlock(3, 200, 3, BlockRegistry.DIRT));
+    assertEquals(List.of("block 3,200,3"), reports);
+  }
+
+  @Test
+  void sandOverClearedBoxFalls() {
+    world.fill(new AABB(2, 200, 2, 4, 209, 4), BlockRegistry.STONE);
+    world.setBlock(3, 210, 3, BlockRegistry.SAND);
+    for (int i = 0; i < 20; i++) {
+      world.tick(0.05f);
+    }
+    assertEquals(BlockRegistry.SAND, world.getBlockType(3, 210, 3));
+
+    world.fill(new AABB(2, 200, 2, 4, 209, 4), BlockRegistry.AIR);
+    for (int i = 0; i < 20; i++) {
+      world.tick(0.05f);
+    }
+    assertEquals(BlockRegistry.AIR, world.getBlockType(3, 210, 3));
+  }
+}
@@ -0,0 +1,73 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WorldSnapshotTest {
+  @TempDir
+  Path directory;
+  private World world;
+
+  @BeforeEach
+  void loadSpawn() {
+    world = new World(1);
+    world.loadArea(0, 0, 1);
+  }
+
+  @AfterEach
+  void cleanup() {
+    world.cleanup();
+  }
+
+  @Test
+  void restoredChunksAreModifiedAndReported() throws Exception {
+    Path file = directory.resolve("world.snapshot");
+    WorldSnapshot.write(world, file, 2);
+    Chunk before = world.getChunk(0, 0);
+
+    Set<Long> changed = new HashSet<>();
+    world.setBlockChangeListener(new World.BlockChangeListener() {
+      @Override
+      public void blockChanged(int x, int y, int z, int type) {
+      }
+
+      @Override
+      public void chunkChanged(int chunkX, int chunkZ) {
+        changed.add(ChunkPos.asLong(chunkX, chunkZ));
+      }
+    });
+    world.restoreSnapshot(file, 2);
+
+    Chunk after = world.getChunk(0, 0);
+    assertNotSame(before, after);
+    // Unmodified, unloadDistantChunks would drop it and regenerate terrain instead
+    assertTrue(after.isModified());
+    try (WorldSnapshot.Reader reader = new WorldSnapshot.Reader(file)) {
+      assertEquals(reader.size(), changed.size());
+    }
+    assertTrue(changed.contains(ChunkPos.asLong(0, 0)));
+  }
+
+  @Test
+  void failedWriteRemovesTemporaryFile() throws IOException {
+    // A non-empty directory in the way makes the final move fail
+    Path file = directory.resolve("world.snapshot");
+    Files.createDirectories(file.resolve("in-the-way"));
+
+    assertThrows(IOException.class, () -> WorldSnapshot.write(world, file, 2));
+    assertFalse(Files.exists(directory.resolve("world.snapshot.tmp")));
+  }
+}
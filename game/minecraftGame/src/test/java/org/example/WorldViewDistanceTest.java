@@ -0,0 +1,60 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.joml.Vector3f;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class WorldViewDistanceTest {
+  private World world;
+
+  @BeforeEach
+  void create() {
+    world = new World(1);
+  }
+
+  @AfterEach
+  void cleanup() {
+    world.cleanup();
+  }
+
+  @Test
+  void loadDistanceFollowsRenderDistanceByDefault() {
+    world.setRenderDistance(6);
+    assertEquals(7, world.getLoadDistance());
+  }
+
+  @Test
+  void loadDistanceIsSetIndependently() {
+    world.setRenderDistance(4);
+    world.setLoadDistance(10);
+    assertEquals(4, world.getRenderDistance());
+    assertEquals(10, world.getLoadDistance());
+    // The render distance can shrink without pulling the load distance along
+    world.setRenderDistance(2);
+    assertEquals(10, world.getLoadDistance());
+  }
+
+  @Test
+  void loadDistanceNeverFallsBelowRenderDistancePlusOne() {
+    world.setLoadDistance(3);
+    world.setRenderDistance(8);
+    assertEquals(9, world.getLoadDistance());
+    world.setLoadDistance(0);
+    world.setRenderDistance(5);
+    assertEquals(6, world.getLoadDistance());
+  }
+
+  @Test
+  void simulationCentresOnThePlayerChunk() {
+    world.loadArea(10, -3, 1);
+    world.setSimulationDistance(0);
+    world.updateChunks(new Vector3f(10 * 16 + 5, 80, -3 * 16 + 2));
+    assertTrue(world.isSimulated(10, -3));
+    assertFalse(world.isSimulated(11, -3));
+  }
+}